@@ -0,0 +1,75 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the lookups that resolve algorithms while parsing certificates: {@link
+ * SignatureAlgorithms} by M2M, NFC and SEC object identifier, {@link CryptoAlgorithms} by algorithm
+ * name and {@link DigestAlgorithms} by digest name.
+ *
+ * <p>The lookups are index reads, so the time should be the same for the first and the last
+ * constant of each enum. Run with {@code -prof gc} to confirm that they allocate nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlgorithmLookupBenchmark {
+  @Param({"ECQV_SHA256_SECP192R1", "ECQV_SHA512_SECP521R1"})
+  public String algorithm;
+
+  private String m2mOid;
+  private String nfcOid;
+  private String secOid;
+  private String algorithmName;
+  private String digestName;
+
+  @Setup
+  public void setUp() {
+    SignatureAlgorithms signatureAlgorithm = SignatureAlgorithms.valueOf(algorithm);
+
+    // copies, so lookups hash and compare the strings instead of hitting identity checks
+    m2mOid = new String(signatureAlgorithm.getM2mOid().getOid());
+    nfcOid = new String(signatureAlgorithm.getNfcOid().getOid());
+    secOid = new String(signatureAlgorithm.getSecOid());
+    algorithmName = new String(signatureAlgorithm.getCryptoAlgorithm().getAlgorithmName());
+    digestName = new String(signatureAlgorithm.getDigestAlgorithm().getDigestName());
+  }
+
+  @Benchmark
+  public SignatureAlgorithms m2mOid() {
+    return SignatureAlgorithms.getInstance(m2mOid);
+  }
+
+  @Benchmark
+  public SignatureAlgorithms nfcOid() {
+    return SignatureAlgorithms.getInstance(nfcOid);
+  }
+
+  @Benchmark
+  public SignatureAlgorithms secOid() {
+    return SignatureAlgorithms.getInstance(secOid, true);
+  }
+
+  @Benchmark
+  public CryptoAlgorithms algorithmName() {
+    return CryptoAlgorithms.getInstance(algorithmName);
+  }
+
+  @Benchmark
+  public DigestAlgorithms digestName() {
+    return DigestAlgorithms.getInstance(digestName);
+  }
+}
@@ -0,0 +1,260 @@
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Asynchronous front end to an {@link EcqvProvider}.
+ *
+ * <p>Requests return at once with a {@link CompletableFuture}, and the elliptic curve work runs on
+ * the given executor, which should be a pool sized to the number of cores, such as
+ * {@code Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())}. Callers never
+ * block a thread while waiting.
+ *
+ * <p>Admission control: at most maxPending requests are queued or running at once, and further
+ * requests fail at once with {@link RejectedExecutionException}, so a burst sheds load instead of
+ * growing the queue. Deadlines: each request has a timeout after which its future fails with
+ * {@link TimeoutException}; a request whose deadline has passed before it starts is skipped.
+ * Coalescing: a public key reconstruction identical to one already pending shares its result
+ * instead of being queued again. Issuance is never coalesced, since each call must produce new
+ * reconstruction data.
+ *
+ * <p>Instances are safe for use by multiple concurrent threads.
+ */
+public class AsyncEcqvService {
+  private final EcqvProvider provider;
+  private final Executor executor;
+  private final int maxPending;
+  private final Semaphore permits;
+  private final ConcurrentMap<ReconstructionRequest, PendingReconstruction> pendingReconstructions =
+      new ConcurrentHashMap<ReconstructionRequest, PendingReconstruction>();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  /**
+   * Create a new instance.
+   *
+   * @param provider Required. Provider doing the elliptic curve work.
+   * @param executor Required. Executor running the work; it is not shut down by this service.
+   * @param maxPending Maximum number of requests queued or running at once, greater than zero.
+   *
+   * @throws IllegalArgumentException if maxPending is not greater than zero.
+   */
+  public AsyncEcqvService(EcqvProvider provider, Executor executor, int maxPending)
+      throws IllegalArgumentException {
+    if (maxPending <= 0) {
+      throw new IllegalArgumentException("Maximum pending requests must be greater than zero");
+    }
+
+    this.provider = provider;
+    this.executor = executor;
+    this.maxPending = maxPending;
+    permits = new Semaphore(maxPending);
+  }
+
+  /**
+   * Generate reconstruction data for an implicit certificate, as
+   * {@link EcqvProvider#genReconstructionData(byte[], PublicKey, PrivateKey)} does.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param ephemeralPublicKey the requesters ephemeral public key
+   * @param issuerPrivateKey the issuers private key
+   * @param timeout time to wait for the result
+   * @param unit unit of timeout
+   *
+   * @return future reconstruction data, failing with {@link RejectedExecutionException} if too many
+   *         requests are pending or {@link TimeoutException} if the deadline passes
+   */
+  public CompletableFuture<KeyReconstructionData> genReconstructionData(
+      final byte[] identifyingInfo, final PublicKey ephemeralPublicKey,
+      final PrivateKey issuerPrivateKey, long timeout, TimeUnit unit) {
+    final byte[] identifyingInfoCopy = identifyingInfo.clone();
+    CompletableFuture<KeyReconstructionData> result =
+        new CompletableFuture<KeyReconstructionData>();
+
+    submit(result, new Callable<KeyReconstructionData>() {
+      @Override
+      public KeyReconstructionData call() throws Exception {
+        return provider.genReconstructionData(
+            identifyingInfoCopy, ephemeralPublicKey, issuerPrivateKey);
+      }
+    }, new AtomicLong(deadline(timeout, unit)));
+
+    return result.orTimeout(timeout, unit);
+  }
+
+  /**
+   * Reconstruct the public key from an implicit certificate, as
+   * {@link EcqvProvider#reconstructPublicKey(byte[], byte[], PublicKey)} does. If an identical
+   * reconstruction is already pending, its result is shared, and its deadline is extended to this
+   * call's if that is later.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param qCa the CA's public key
+   * @param timeout time to wait for the result
+   * @param unit unit of timeout
+   *
+   * @return future public key, failing with {@link RejectedExecutionException} if too many requests
+   *         are pending or {@link TimeoutException} if the deadline passes
+   */
+  public CompletableFuture<PublicKey> reconstructPublicKey(
+      byte[] identifyingInfo, byte[] reconstructionPoint, PublicKey qCa, long timeout,
+      TimeUnit unit) {
+    final ReconstructionRequest request =
+        new ReconstructionRequest(identifyingInfo, reconstructionPoint, qCa);
+    long deadline = deadline(timeout, unit);
+
+    PendingReconstruction pending = pendingReconstructions.get(request);
+    if (pending == null) {
+      PendingReconstruction created = new PendingReconstruction(deadline);
+      pending = pendingReconstructions.putIfAbsent(request, created);
+
+      if (pending == null) {
+        final PendingReconstruction started = created;
+        started.result.whenComplete(new BiConsumer<PublicKey, Throwable>() {
+          @Override
+          public void accept(PublicKey publicKey, Throwable failure) {
+            pendingReconstructions.remove(request, started);
+          }
+        });
+
+        submit(started.result, new Callable<PublicKey>() {
+          @Override
+          public PublicKey call() throws Exception {
+            return provider.reconstructPublicKey(
+                request.identifyingInfo, request.reconstructionPoint, request.qCa);
+          }
+        }, started.deadline);
+
+        // a copy, so this caller's timeout does not fail the shared result
+        return started.result.copy().orTimeout(timeout, unit);
+      }
+    }
+
+    coalescedCount.incrementAndGet();
+    pending.extendDeadline(deadline);
+
+    return pending.result.copy().orTimeout(timeout, unit);
+  }
+
+  /**
+   * Returns the number of requests queued or running.
+   *
+   * @return Pending request count.
+   */
+  public int getPendingCount() {
+    return maxPending - permits.availablePermits();
+  }
+
+  /**
+   * Returns the number of public key reconstructions that shared the result of a pending one.
+   *
+   * @return Coalesced request count.
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * Run a task on the executor if a permit is available, completing the future with its outcome.
+   *
+   * @param result future to complete
+   * @param task the work to run
+   * @param deadline System.nanoTime() after which the task is skipped if not yet started
+   */
+  private <T> void submit(
+      final CompletableFuture<T> result, final Callable<T> task, final AtomicLong deadline) {
+    if (!permits.tryAcquire()) {
+      result.completeExceptionally(new RejectedExecutionException(
+          "Too many pending requests: " + maxPending));
+      return;
+    }
+
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (System.nanoTime() - deadline.get() > 0) {
+              result.completeExceptionally(
+                  new TimeoutException("Deadline passed before the request started"));
+            } else {
+              result.complete(task.call());
+            }
+          } catch (Throwable ex) {
+            result.completeExceptionally(ex);
+          } finally {
+            permits.release();
+          }
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      permits.release();
+      result.completeExceptionally(ex);
+    }
+  }
+
+  private static long deadline(long timeout, TimeUnit unit) {
+    return System.nanoTime() + unit.toNanos(timeout);
+  }
+
+  /** A pending public key reconstruction shared by identical requests. */
+  private static class PendingReconstruction {
+    final CompletableFuture<PublicKey> result = new CompletableFuture<PublicKey>();
+    final AtomicLong deadline;
+
+    PendingReconstruction(long deadline) {
+      this.deadline = new AtomicLong(deadline);
+    }
+
+    void extendDeadline(long later) {
+      long current;
+      do {
+        current = deadline.get();
+      } while (later - current > 0 && !deadline.compareAndSet(current, later));
+    }
+  }
+
+  /** The inputs of a public key reconstruction, compared by value. */
+  private static class ReconstructionRequest {
+    final byte[] identifyingInfo;
+    final byte[] reconstructionPoint;
+    final PublicKey qCa;
+    private final int hashCode;
+
+    ReconstructionRequest(byte[] identifyingInfo, byte[] reconstructionPoint, PublicKey qCa) {
+      this.identifyingInfo = identifyingInfo.clone();
+      this.reconstructionPoint = reconstructionPoint.clone();
+      this.qCa = qCa;
+      hashCode = 31 * (31 * Arrays.hashCode(this.identifyingInfo)
+          + Arrays.hashCode(this.reconstructionPoint)) + qCa.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof ReconstructionRequest)) {
+        return false;
+      }
+
+      ReconstructionRequest request = (ReconstructionRequest) other;
+      return Arrays.equals(identifyingInfo, request.identifyingInfo)
+          && Arrays.equals(reconstructionPoint, request.reconstructionPoint)
+          && qCa.equals(request.qCa);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,435 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.PrivateKey;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPrivateKey;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * Issues Elliptic Curve Qu-Vanstone (ECQV) reconstruction data for every device of a manifest file,
+ * with bounded memory.
+ *
+ * <p>The manifest is a sequence of records, each made of:
+ * <ul>
+ * <li>the length of the identifying info, as an unsigned 16-bit big-endian integer</li>
+ * <li>the identifying info</li>
+ * <li>the length of the device's ephemeral public key Ru, as an unsigned byte</li>
+ * <li>Ru, as an encoded elliptic curve point</li>
+ * </ul>
+ *
+ * <p>The output holds one record per manifest record, in manifest order, in the fixed-length
+ * format of {@link KeyReconstructionRecords}, so it can be mapped and read back in place.
+ *
+ * <p>The manifest is read in chunks of whole records, which are issued in parallel by a pool of
+ * worker threads and written back in order. At most two chunks per worker are held at any time, so
+ * reading waits for the output to catch up. After each chunk is written, the output is forced to
+ * disk and a checkpoint file records the number of records issued and the manifest and output
+ * offsets reached. The checkpoint is itself forced to disk before it replaces the previous one. A
+ * run interrupted at any point can be resumed from its checkpoint, and running again after
+ * completion issues nothing more. Records may be appended to the manifest between runs. To start
+ * over, delete the checkpoint file.
+ *
+ * <p>The checkpoint also records the signature algorithm and a SHA-256 hash of the start of the
+ * manifest, up to {@value #FINGERPRINT_LENGTH} bytes, so resuming with another algorithm or another
+ * manifest is rejected rather than skipping its first records.
+ */
+public class BulkIssuancePipeline {
+  /** Default size in bytes of the manifest chunks handed to the workers. */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  /** Length of the manifest record header: the 16-bit identifying info length. */
+  private static final int ID_LENGTH_BYTES = 2;
+
+  /** Maximum number of bytes at the start of the manifest hashed to identify it. */
+  private static final int FINGERPRINT_LENGTH = 1 << 16;
+
+  private static final int CHECKPOINT_MAGIC = 0x45435150; // "ECQP"
+
+  private final EcqvProvider provider;
+  private final BigInteger dCa;
+  private final ECCurve curve;
+  private final CryptoAlgorithms curveId;
+  private final int workerCount;
+  private final int chunkSize;
+
+  /**
+   * Create a new instance.
+   *
+   * @param provider Required. Provider issuing the reconstruction data.
+   * @param issuerPrivateKey Required. The issuers private key.
+   * @param workerCount Number of worker threads, greater than zero.
+   * @param chunkSize Size in bytes of the manifest chunks, at least as large as the largest record.
+   *
+   * @throws IllegalArgumentException if workerCount or chunkSize is not greater than zero.
+   */
+  public BulkIssuancePipeline(
+      EcqvProvider provider, PrivateKey issuerPrivateKey, int workerCount, int chunkSize)
+          throws IllegalArgumentException {
+    if (workerCount <= 0 || chunkSize <= 0) {
+      throw new IllegalArgumentException(
+          "Worker count and chunk size must be greater than zero: " + workerCount + ", "
+              + chunkSize);
+    }
+
+    this.provider = provider;
+    this.workerCount = workerCount;
+    this.chunkSize = chunkSize;
+    dCa = ((BCECPrivateKey) issuerPrivateKey).getD();
+    curve = provider.getCurveParameters().getCurve();
+    curveId = provider.getAlgorithm().getCryptoAlgorithm();
+  }
+
+  /**
+   * Issue reconstruction data for the records of the manifest not yet covered by the checkpoint.
+   *
+   * @param manifest Manifest file to read.
+   * @param output Output file, created if it does not exist.
+   * @param checkpoint Checkpoint file, created if it does not exist.
+   *
+   * @return Total number of records issued, including those of earlier runs.
+   *
+   * @throws IOException if a file cannot be read or written, or the manifest is malformed.
+   * @throws InterruptedException if interrupted while waiting for the workers.
+   */
+  public long run(Path manifest, Path output, Path checkpoint)
+      throws IOException, InterruptedException {
+    long records = 0;
+    long manifestOffset = 0;
+    long outputOffset = 0;
+    Checkpoint start;
+
+    if (Files.exists(checkpoint)) {
+      start = readCheckpoint(checkpoint);
+      if (!start.algorithm.equals(provider.getAlgorithm().name())) {
+        throw new IOException("Checkpoint is for another signature algorithm: " + start.algorithm);
+      }
+
+      records = start.records;
+      manifestOffset = start.manifestOffset;
+      outputOffset = start.outputOffset;
+    } else {
+      start = null;
+    }
+
+    ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+    Deque<Chunk> inFlight = new ArrayDeque<Chunk>();
+
+    try (FileChannel in = FileChannel.open(manifest, StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(
+            output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      // the manifest must start as it did when the checkpoint was written
+      int fingerprintLength = (start != null)
+          ? start.fingerprintLength : (int) Math.min(FINGERPRINT_LENGTH, in.size());
+      byte[] fingerprint = fingerprint(in, fingerprintLength);
+      if (start != null
+          && (in.size() < manifestOffset || !Arrays.equals(fingerprint, start.fingerprint))) {
+        throw new IOException("Checkpoint is for another manifest");
+      }
+      Checkpoint progress = new Checkpoint(
+          provider.getAlgorithm().name(), fingerprintLength, fingerprint, records, 0, 0);
+
+      // anything past the checkpoint was written by an interrupted run and is issued again
+      in.position(manifestOffset);
+      out.truncate(outputOffset);
+      out.position(outputOffset);
+
+      ByteBuffer carry = ByteBuffer.allocate(0);
+      boolean endOfManifest = false;
+
+      while (!endOfManifest) {
+        ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+        chunk.put(carry);
+
+        while (chunk.hasRemaining()) {
+          if (in.read(chunk) < 0) {
+            endOfManifest = true;
+            break;
+          }
+        }
+
+        chunk.flip();
+
+        // find the end of the last whole record in the chunk
+        int end = 0;
+        int count = 0;
+        int recordLength;
+        while ((recordLength = recordLength(chunk, end)) > 0) {
+          end += recordLength;
+          count++;
+        }
+
+        if (count == 0 && !endOfManifest) {
+          throw new IOException("Manifest record at offset " + manifestOffset
+              + " is larger than the chunk size " + chunkSize);
+        } else if (endOfManifest && end < chunk.limit()) {
+          throw new IOException("Truncated manifest record at offset " + (manifestOffset + end));
+        }
+
+        // the partial record at the end of the chunk starts the next chunk
+        chunk.position(end);
+        carry = ByteBuffer.allocate(chunk.remaining());
+        carry.put(chunk);
+        carry.flip();
+
+        chunk.rewind();
+        chunk.limit(end);
+        manifestOffset += end;
+
+        if (count > 0) {
+          if (inFlight.size() == 2 * workerCount) {
+            records = write(inFlight.poll(), out, checkpoint, progress);
+          }
+
+          inFlight.add(new Chunk(workers.submit(issue(chunk, count)), count, manifestOffset));
+        }
+      }
+
+      while (!inFlight.isEmpty()) {
+        records = write(inFlight.poll(), out, checkpoint, progress);
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+
+    return records;
+  }
+
+  /**
+   * Returns the length of the record at the given offset of the chunk.
+   *
+   * @return Length of the record, or -1 if the chunk does not hold the whole record.
+   */
+  private static int recordLength(ByteBuffer chunk, int offset) {
+    int available = chunk.limit() - offset;
+    if (available < ID_LENGTH_BYTES) {
+      return -1;
+    }
+
+    int idLength = chunk.getShort(offset) & 0xFFFF;
+    if (available < ID_LENGTH_BYTES + idLength + 1) {
+      return -1;
+    }
+
+    int length = ID_LENGTH_BYTES + idLength + 1 + (chunk.get(offset + ID_LENGTH_BYTES + idLength)
+        & 0xFF);
+
+    return (length <= available) ? length : -1;
+  }
+
+  /**
+   * Returns a task issuing the reconstruction data of the whole records of a chunk.
+   *
+   * @param chunk Manifest records, from position zero to the limit.
+   * @param count Number of records in the chunk.
+   * @return Task returning the output records, ready to be written.
+   */
+  private Callable<ByteBuffer> issue(final ByteBuffer chunk, final int count) {
+    return new Callable<ByteBuffer>() {
+      @Override
+      public ByteBuffer call() throws IOException {
+        KeyReconstructionRecords result = KeyReconstructionRecords.allocate(curveId, count);
+        int offset = 0;
+
+        for (int i = 0; i < count; i++) {
+          int idLength = chunk.getShort(offset) & 0xFFFF;
+          offset += ID_LENGTH_BYTES;
+
+          ByteBuffer identifyingInfo = chunk.duplicate();
+          identifyingInfo.position(offset);
+          identifyingInfo.limit(offset + idLength);
+          offset += idLength;
+
+          byte[] encodedPoint = new byte[chunk.get(offset) & 0xFF];
+          ByteBuffer pointBytes = chunk.duplicate();
+          pointBytes.position(offset + 1);
+          pointBytes.get(encodedPoint);
+          offset += 1 + encodedPoint.length;
+
+          ECPoint ephemeralPoint;
+          try {
+            ephemeralPoint = curve.decodePoint(encodedPoint);
+          } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid ephemeral public key in manifest", ex);
+          }
+
+          if (ephemeralPoint.isInfinity()) {
+            throw new IOException("Invalid ephemeral public key in manifest");
+          }
+
+          result.put(i, provider.genReconstructionData(identifyingInfo, ephemeralPoint, dCa));
+        }
+
+        return result.getBuffer();
+      }
+    };
+  }
+
+  /**
+   * Write the output of a chunk once it is issued, then checkpoint.
+   *
+   * @param progress The checkpoint of the previous chunk, updated for this one.
+   * @return Total number of records issued.
+   */
+  private long write(Chunk chunk, FileChannel out, Path checkpoint, Checkpoint progress)
+      throws IOException, InterruptedException {
+    ByteBuffer result;
+    try {
+      result = chunk.result.get();
+    } catch (ExecutionException ex) {
+      throw new IOException("Issuance failed", ex.getCause());
+    }
+
+    while (result.hasRemaining()) {
+      out.write(result);
+    }
+
+    // the output must be on disk before the checkpoint that covers it
+    out.force(false);
+    progress.records += chunk.count;
+    progress.manifestOffset = chunk.manifestEnd;
+    progress.outputOffset = out.position();
+
+    // and the checkpoint before it replaces the previous one
+    ByteBuffer encoded = progress.encode();
+    Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+    try (FileChannel checkpointOut = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (encoded.hasRemaining()) {
+        checkpointOut.write(encoded);
+      }
+      checkpointOut.force(true);
+    }
+    Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+
+    return progress.records;
+  }
+
+  /**
+   * Returns the SHA-256 hash of the first bytes of the manifest.
+   *
+   * @param in The manifest; its position is unchanged.
+   * @param length Number of bytes to hash.
+   */
+  private static byte[] fingerprint(FileChannel in, int length) throws IOException {
+    ByteBuffer start = ByteBuffer.allocate(length);
+
+    while (start.hasRemaining()) {
+      if (in.read(start, start.position()) < 0) {
+        throw new IOException("Checkpoint is for another manifest");
+      }
+    }
+
+    SHA256Digest digest = new SHA256Digest();
+    byte[] fingerprint = new byte[digest.getDigestSize()];
+    digest.update(start.array(), 0, length);
+    digest.doFinal(fingerprint, 0);
+    return fingerprint;
+  }
+
+  /**
+   * Read a checkpoint file.
+   *
+   * @throws IOException if the file cannot be read or is not a well-formed checkpoint.
+   */
+  private static Checkpoint readCheckpoint(Path checkpoint) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+
+    try {
+      if (in.getInt() != CHECKPOINT_MAGIC) {
+        throw new IOException("Not a bulk issuance checkpoint: " + checkpoint);
+      }
+
+      byte[] algorithm = new byte[in.get() & 0xFF];
+      in.get(algorithm);
+      int fingerprintLength = in.getInt();
+      byte[] fingerprint = new byte[in.get() & 0xFF];
+      in.get(fingerprint);
+      Checkpoint result = new Checkpoint(new String(algorithm, StandardCharsets.US_ASCII),
+          fingerprintLength, fingerprint, in.getLong(), in.getLong(), in.getLong());
+
+      if (in.hasRemaining() || fingerprintLength < 0 || fingerprintLength > FINGERPRINT_LENGTH
+          || result.records < 0 || result.manifestOffset < 0 || result.outputOffset < 0) {
+        throw new IOException("Malformed bulk issuance checkpoint: " + checkpoint);
+      }
+
+      return result;
+    } catch (BufferUnderflowException ex) {
+      throw new IOException("Malformed bulk issuance checkpoint: " + checkpoint, ex);
+    }
+  }
+
+  /** The progress of a run, as recorded in the checkpoint file. */
+  private static class Checkpoint {
+    final String algorithm;
+    final int fingerprintLength;
+    final byte[] fingerprint;
+    long records;
+    long manifestOffset;
+    long outputOffset;
+
+    Checkpoint(String algorithm, int fingerprintLength, byte[] fingerprint, long records,
+        long manifestOffset, long outputOffset) {
+      this.algorithm = algorithm;
+      this.fingerprintLength = fingerprintLength;
+      this.fingerprint = fingerprint;
+      this.records = records;
+      this.manifestOffset = manifestOffset;
+      this.outputOffset = outputOffset;
+    }
+
+    /**
+     * Returns the checkpoint file content, big-endian: the magic number, the algorithm name as a
+     * length byte and ASCII bytes, the fingerprint length, the fingerprint as a length byte and
+     * bytes, then the records issued and the manifest and output offsets reached.
+     */
+    ByteBuffer encode() {
+      byte[] name = algorithm.getBytes(StandardCharsets.US_ASCII);
+      ByteBuffer encoded =
+          ByteBuffer.allocate(4 + 1 + name.length + 4 + 1 + fingerprint.length + 3 * 8);
+
+      encoded.putInt(CHECKPOINT_MAGIC);
+      encoded.put((byte) name.length);
+      encoded.put(name);
+      encoded.putInt(fingerprintLength);
+      encoded.put((byte) fingerprint.length);
+      encoded.put(fingerprint);
+      encoded.putLong(records);
+      encoded.putLong(manifestOffset);
+      encoded.putLong(outputOffset);
+      encoded.flip();
+      return encoded;
+    }
+  }
+
+  /** A chunk of manifest records handed to the workers. */
+  private static class Chunk {
+    final Future<ByteBuffer> result;
+    final int count;
+    final long manifestEnd;
+
+    Chunk(Future<ByteBuffer> result, int count, long manifestEnd) {
+      this.result = result;
+      this.count = count;
+      this.manifestEnd = manifestEnd;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+import java.security.PublicKey;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPublicKey;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * Registry of Certificate Authority (CA) public keys used for Elliptic Curve Qu-Vanstone (ECQV)
+ * public key reconstruction.
+ *
+ * <p>The point of each registered key is decoded onto the provider's curve, validated and
+ * normalized once, so reconstruction against a registered CA reuses the same point instead of
+ * converting the key on every call. Precomputation that multiplication attaches to a point, such
+ * as its width-w NAF table, is then kept across calls as well. Keys that are not registered are
+ * converted per call. Registered points are kept on the heap; a {@link MappedCaKeyStore} holds
+ * many CA keys off-heap instead. Instances are safe for use by multiple concurrent threads.
+ */
+public class CaKeyRegistry {
+  private final ECCurve curve;
+  private final ConcurrentMap<PublicKey, ECPoint> points =
+      new ConcurrentHashMap<PublicKey, ECPoint>();
+
+  /**
+   * Create a new instance.
+   *
+   * @param curve Required. The curve that registered keys must lie on.
+   */
+  public CaKeyRegistry(ECCurve curve) {
+    this.curve = curve;
+  }
+
+  /**
+   * Register a CA public key.
+   *
+   * @param qCa the CA's public key
+   *
+   * @return the CA's point, normalized, on the registry's curve
+   *
+   * @throws IllegalArgumentException if the key's point is not a valid point on the curve
+   */
+  public ECPoint register(PublicKey qCa) throws IllegalArgumentException {
+    ECPoint caPoint = points.get(qCa);
+
+    if (caPoint == null) {
+      caPoint = toCurvePoint(qCa).normalize();
+
+      if (!caPoint.isValid()) {
+        throw new IllegalArgumentException("CA public key is not a valid point on the curve");
+      }
+
+      ECPoint existing = points.putIfAbsent(qCa, caPoint);
+      if (existing != null) {
+        caPoint = existing;
+      }
+    }
+
+    return caPoint;
+  }
+
+  /**
+   * Remove a CA public key from the registry.
+   *
+   * @param qCa the CA's public key
+   *
+   * @return true if the key was registered, false otherwise
+   */
+  public boolean unregister(PublicKey qCa) {
+    return points.remove(qCa) != null;
+  }
+
+  /**
+   * Returns true if the CA public key is registered.
+   *
+   * @param qCa the CA's public key
+   *
+   * @return true if the key is registered, false otherwise
+   */
+  public boolean isRegistered(PublicKey qCa) {
+    return points.containsKey(qCa);
+  }
+
+  /**
+   * Returns the number of registered CA public keys.
+   *
+   * @return Number of registered keys.
+   */
+  public int size() {
+    return points.size();
+  }
+
+  /**
+   * Returns the point of a CA public key on the registry's curve. Registered keys return their
+   * cached point; other keys are converted without being registered.
+   *
+   * @param qCa the CA's public key
+   *
+   * @return the CA's point on the registry's curve
+   */
+  ECPoint getPoint(PublicKey qCa) {
+    ECPoint caPoint = points.get(qCa);
+
+    return (caPoint != null) ? caPoint : toCurvePoint(qCa);
+  }
+
+  private ECPoint toCurvePoint(PublicKey publicKey) {
+    return curve.importPoint(((BCECPublicKey) publicKey).getQ());
+  }
+}
@@ -0,0 +1,157 @@
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Provider;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * Computes H(Certu) = H(identifyingInfo || reconstructionPoint) for the Elliptic Curve Qu-Vanstone
+ * (ECQV) scheme.
+ *
+ * <p>Inputs are fed to the digest as whole buffers, and each thread hashes with its own digest into
+ * its own output buffer, so hashing produces no garbage once a thread has warmed up. Instances are
+ * safe for use by multiple concurrent threads.
+ */
+public class CertificateHasher {
+  private final ThreadLocal<MessageDigest> digests;
+  private final ThreadLocal<byte[]> outputs;
+  private final int digestLength;
+
+  /**
+   * Create a new instance.
+   *
+   * @param algorithm Required. Digest algorithm.
+   *
+   * @throws NoSuchAlgorithmException From Bouncy Castle
+   * @throws NoSuchProviderException From Bouncy Castle
+   */
+  public CertificateHasher(DigestAlgorithms algorithm)
+      throws NoSuchAlgorithmException, NoSuchProviderException {
+    this(MessageDigest.getInstance(algorithm.getDigestName(), BouncyCastleProvider.PROVIDER_NAME));
+  }
+
+  /**
+   * Create a new instance with digests from the given provider, which need not be installed.
+   *
+   * @param algorithm Required. Digest algorithm.
+   * @param provider Required. Security provider supplying the digest.
+   *
+   * @throws NoSuchAlgorithmException if the provider does not implement the digest
+   */
+  public CertificateHasher(DigestAlgorithms algorithm, Provider provider)
+      throws NoSuchAlgorithmException {
+    this(MessageDigest.getInstance(algorithm.getDigestName(), provider));
+  }
+
+  private CertificateHasher(final MessageDigest digest) {
+    digestLength = digest.getDigestLength();
+
+    digests = new ThreadLocal<MessageDigest>() {
+      @Override
+      protected MessageDigest initialValue() {
+        try {
+          return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException ex) {
+          throw new IllegalStateException("Digest cannot be cloned: " + digest.getAlgorithm(), ex);
+        }
+      }
+    };
+    outputs = new ThreadLocal<byte[]>() {
+      @Override
+      protected byte[] initialValue() {
+        return new byte[digestLength];
+      }
+    };
+  }
+
+  /**
+   * Returns the length of the hash in bytes.
+   *
+   * @return Digest length.
+   */
+  public int getDigestLength() {
+    return digestLength;
+  }
+
+  /**
+   * Hash the implicit certificate Certu.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   *
+   * @return H(Certu), in a buffer owned by the calling thread that is overwritten by its next call
+   */
+  public byte[] hash(byte[] identifyingInfo, byte[] reconstructionPoint) {
+    MessageDigest digest = digests.get();
+    digest.update(identifyingInfo);
+    digest.update(reconstructionPoint);
+
+    return finish(digest);
+  }
+
+  /**
+   * Hash the implicit certificate Certu, reading the identity portion from a buffer. The remaining
+   * bytes of the buffer are hashed and its position is unchanged on return, so heap and direct
+   * buffers can be hashed repeatedly without copying.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   *
+   * @return H(Certu), in a buffer owned by the calling thread that is overwritten by its next call
+   */
+  public byte[] hash(ByteBuffer identifyingInfo, byte[] reconstructionPoint) {
+    MessageDigest digest = digests.get();
+    int position = identifyingInfo.position();
+    digest.update(identifyingInfo);
+    identifyingInfo.position(position);
+    digest.update(reconstructionPoint);
+
+    return finish(digest);
+  }
+
+  /**
+   * Hash the implicit certificate Certu, reading both the identity portion and the reconstruction
+   * point from buffers. The remaining bytes of each buffer are hashed and their positions are
+   * unchanged on return.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   *
+   * @return H(Certu), in a buffer owned by the calling thread that is overwritten by its next call
+   */
+  public byte[] hash(ByteBuffer identifyingInfo, ByteBuffer reconstructionPoint) {
+    MessageDigest digest = digests.get();
+    int position = identifyingInfo.position();
+    digest.update(identifyingInfo);
+    identifyingInfo.position(position);
+    position = reconstructionPoint.position();
+    digest.update(reconstructionPoint);
+    reconstructionPoint.position(position);
+
+    return finish(digest);
+  }
+
+  /**
+   * Returns the digest of the calling thread. It must be left reset after use.
+   *
+   * @return Digest of the calling thread.
+   */
+  MessageDigest getDigest() {
+    return digests.get();
+  }
+
+  private byte[] finish(MessageDigest digest) {
+    byte[] output = outputs.get();
+
+    try {
+      digest.digest(output, 0, digestLength);
+    } catch (DigestException ex) {
+      throw new IllegalStateException("Digest output buffer too small", ex);
+    }
+
+    return output;
+  }
+}
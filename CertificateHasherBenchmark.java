@@ -0,0 +1,91 @@
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares hashing Certu one byte at a time with the bulk {@link CertificateHasher} path, for every
+ * {@link DigestAlgorithms} entry.
+ *
+ * <p>Run with {@code -prof gc} to compare the allocation rate of the two paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CertificateHasherBenchmark {
+  @Param({"SHA1", "SHA224", "SHA256", "SHA384", "SHA512"})
+  public String digestAlgorithm;
+
+  /** Length of the identity portion of the certificate, in bytes. */
+  @Param({"64", "1024", "16384"})
+  public int identityLength;
+
+  private MessageDigest digest;
+  private CertificateHasher hasher;
+  private byte[] identifyingInfo;
+  private ByteBuffer directIdentifyingInfo;
+  private byte[] reconstructionPoint;
+
+  @Setup
+  public void setUp() throws Exception {
+    Security.addProvider(new BouncyCastleProvider());
+
+    DigestAlgorithms algorithm = DigestAlgorithms.valueOf(digestAlgorithm);
+    digest =
+        MessageDigest.getInstance(algorithm.getDigestName(), BouncyCastleProvider.PROVIDER_NAME);
+    hasher = new CertificateHasher(algorithm);
+
+    SecureRandom random = new SecureRandom();
+    identifyingInfo = new byte[identityLength];
+    random.nextBytes(identifyingInfo);
+    directIdentifyingInfo = ByteBuffer.allocateDirect(identityLength);
+    directIdentifyingInfo.put(identifyingInfo).flip();
+
+    // Size of a compressed secp256r1 point
+    reconstructionPoint = new byte[33];
+    random.nextBytes(reconstructionPoint);
+  }
+
+  /**
+   * The hashing loop used by the providers before {@link CertificateHasher}.
+   */
+  @Benchmark
+  public byte[] perByteLoop() {
+    for (byte b : identifyingInfo) {
+      digest.update(b);
+    }
+
+    for (byte b : reconstructionPoint) {
+      digest.update(b);
+    }
+
+    return digest.digest();
+  }
+
+  @Benchmark
+  public byte[] bulkArray() {
+    return hasher.hash(identifyingInfo, reconstructionPoint);
+  }
+
+  @Benchmark
+  public byte[] bulkDirectBuffer() {
+    return hasher.hash(directIdentifyingInfo, reconstructionPoint);
+  }
+}
@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PublicKey;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reconstructs the leaf public keys of Elliptic Curve Qu-Vanstone (ECQV) implicit certificate
+ * chains, for any mix of ECQV signature algorithms.
+ *
+ * <p>Each chain is reconstructed with {@link EcqvProvider#reconstructPublicKey(
+ * ImplicitCertificateChain)}, by the provider of its signature algorithm, so a whole chain costs
+ * one multi-scalar multiplication. Registering root CA keys in a provider's
+ * {@link CaKeyRegistry}, and setting a {@link PointDecompressionCache} to keep the reconstruction
+ * points of intermediate certificates that many chains share, lets chains reuse decoded points.
+ * Many chains are reconstructed at once by splitting them between the workers of a fork-join pool.
+ * Instances are safe for use by multiple concurrent threads.
+ */
+public class ChainVerifier {
+  /** Number of chains below which a task reconstructs its chains instead of splitting them. */
+  private static final int SPLIT_THRESHOLD = 4;
+
+  private final ForkJoinPool pool;
+  private final Map<SignatureAlgorithms, EcqvProvider> providers =
+      new EnumMap<SignatureAlgorithms, EcqvProvider>(SignatureAlgorithms.class);
+
+  /**
+   * Create a new instance, with a provider for every ECQV signature algorithm.
+   *
+   * @param pool Required. Pool reconstructing many chains at once; it is not shut down by this
+   *        verifier.
+   *
+   * @throws NoSuchAlgorithmException From Bouncy Castle
+   * @throws NoSuchProviderException From Bouncy Castle
+   */
+  public ChainVerifier(ForkJoinPool pool)
+      throws NoSuchAlgorithmException, NoSuchProviderException {
+    this.pool = pool;
+
+    for (SignatureAlgorithms algorithm : SignatureAlgorithms.values()) {
+      if (algorithm.isEcqv()) {
+        providers.put(algorithm, new EcqvProvider(algorithm, null));
+      }
+    }
+  }
+
+  /**
+   * Returns the provider reconstructing chains of the given signature algorithm, to register root
+   * CA keys with or to set caches on.
+   *
+   * @param algorithm An ECQV signature algorithm.
+   *
+   * @return The provider for the algorithm.
+   * @throws UnsupportedOperationException if the algorithm is not based on ECQV.
+   */
+  public EcqvProvider getProvider(SignatureAlgorithms algorithm)
+      throws UnsupportedOperationException {
+    EcqvProvider provider = providers.get(algorithm);
+
+    if (provider == null) {
+      throw new UnsupportedOperationException(
+          "Chains can only be verified with ECQV-based signature types");
+    }
+
+    return provider;
+  }
+
+  /**
+   * Reconstruct the public key of the leaf certificate of a chain, on the calling thread.
+   *
+   * @param chain the implicit certificate chain
+   *
+   * @return the public key reconstructed from the leaf certificate
+   *
+   * @throws IllegalArgumentException if the chain is empty
+   * @throws IOException errors in provided data
+   */
+  public PublicKey reconstructPublicKey(ImplicitCertificateChain chain)
+      throws IllegalArgumentException, IOException {
+    return getProvider(chain.getAlgorithm()).reconstructPublicKey(chain);
+  }
+
+  /**
+   * Reconstruct the public keys of the leaf certificates of many chains, in parallel on the pool.
+   * A chain that cannot be reconstructed does not fail the others.
+   *
+   * @param chains the implicit certificate chains
+   *
+   * @return for each chain, the public key reconstructed from its leaf certificate, or null if the
+   *         chain is empty or its data is invalid
+   */
+  public PublicKey[] reconstructPublicKeys(List<ImplicitCertificateChain> chains) {
+    PublicKey[] publicKeys = new PublicKey[chains.size()];
+
+    pool.invoke(new ReconstructionTask(chains, publicKeys, 0, publicKeys.length));
+    return publicKeys;
+  }
+
+  /**
+   * Reconstructs the chains in [from, to), splitting the range in half while it is large.
+   */
+  private class ReconstructionTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<ImplicitCertificateChain> chains;
+    private final PublicKey[] publicKeys;
+    private final int from;
+    private final int to;
+
+    ReconstructionTask(
+        List<ImplicitCertificateChain> chains, PublicKey[] publicKeys, int from, int to) {
+      this.chains = chains;
+      this.publicKeys = publicKeys;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from < SPLIT_THRESHOLD) {
+        for (int i = from; i < to; i++) {
+          try {
+            publicKeys[i] = reconstructPublicKey(chains.get(i));
+          } catch (IllegalArgumentException ex) {
+            publicKeys[i] = null;
+          } catch (IOException ex) {
+            publicKeys[i] = null;
+          }
+        }
+        return;
+      }
+
+      int middle = from + (to - from) / 2;
+      invokeAll(new ReconstructionTask(chains, publicKeys, from, middle),
+          new ReconstructionTask(chains, publicKeys, middle, to));
+    }
+  }
+}
@@ -1,5 +1,9 @@
 // Code found at https://github.com/Trustpoint/tpm2m/tree/master/java/src/ca/trustpoint/m2m
 // credit goes towards TrustPoint Innovation Technologies, Ltd.
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Enumerates the cryptographic algorithms for the supported signature algorithms.
  */
@@ -37,6 +41,18 @@ public enum CryptoAlgorithms {
    */
   RSA("RSA");
 
+  private static final Map<String, CryptoAlgorithms> byAlgorithmName;
+
+  static {
+    Map<String, CryptoAlgorithms> algorithmNames = new HashMap<String, CryptoAlgorithms>();
+
+    for (CryptoAlgorithms algorithm : values()) {
+      algorithmNames.putIfAbsent(algorithm.algorithmName, algorithm);
+    }
+
+    byAlgorithmName = Collections.unmodifiableMap(algorithmNames);
+  }
+
   private final String algorithmName;
 
   /**
@@ -64,38 +80,12 @@ public enum CryptoAlgorithms {
    * @throws IllegalArgumentException if algorithmName is invalid.
    */
   public static CryptoAlgorithms getInstance(String algorithmName) throws IllegalArgumentException {
-    if (algorithmName.equals(CURVE_SECP192R1.algorithmName)) {
-      return CURVE_SECP192R1;
-    }
-
-    if (algorithmName.equals(CURVE_SECP224R1.algorithmName)) {
-      return CURVE_SECP224R1;
-    }
-
-    if (algorithmName.equals(CURVE_SECT233K1.algorithmName)) {
-      return CURVE_SECT233K1;
-    }
-
-    if (algorithmName.equals(CURVE_SECT233R1.algorithmName)) {
-      return CURVE_SECT233R1;
-    }
-
-    if (algorithmName.equals(CURVE_SECP256R1.algorithmName)) {
-      return CURVE_SECP256R1;
-    }
-
-    if (algorithmName.equals(CURVE_SECP384R1.algorithmName)) {
-      return CURVE_SECP384R1;
-    }
-
-    if (algorithmName.equals(CURVE_SECP521R1.algorithmName)) {
-      return CURVE_SECP521R1;
-    }
+    CryptoAlgorithms algorithm = byAlgorithmName.get(algorithmName);
 
-    if (algorithmName.equals(RSA.algorithmName)) {
-      return RSA;
+    if (algorithm == null) {
+      throw new IllegalArgumentException("unknown algorithm name: " + algorithmName);
     }
 
-    throw new IllegalArgumentException("unknown algorithm name: " + algorithmName);
+    return algorithm;
   }
 }
\ No newline at end of file
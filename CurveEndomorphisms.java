@@ -0,0 +1,163 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bouncycastle.jce.spec.ECNamedCurveParameterSpec;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.endo.ECEndomorphism;
+import org.bouncycastle.math.ec.endo.GLVEndomorphism;
+
+/**
+ * Finds the GLV endomorphisms of the curves used by Elliptic Curve Qu-Vanstone (ECQV) signature
+ * algorithms.
+ *
+ * <p>A GLV endomorphism maps P to lambda*P for a fixed lambda at the cost of a field
+ * multiplication, so a scalar k can be split into k0 + k1*lambda with halves about half as long,
+ * and k*P computed as k0*P + k1*phi(P) with half the point doublings. Bouncy Castle applies the
+ * endomorphism carried by a curve in its multipliers and in {@link ECAlgorithms}, and
+ * {@link MultiScalarMultiplier} applies it to Pippenger's method as well, so a curve configured
+ * here needs nothing further from the providers.
+ *
+ * <p>The endomorphism of a curve is the one Bouncy Castle builds it with, or else the first one
+ * supplied by an {@link EndomorphismPlugin} that holds on the curve. Curves are configured while
+ * the generator tables are initialized, so a plugin that fails to load, throws, or supplies an
+ * endomorphism that does not hold is skipped with a warning rather than failing every algorithm.
+ * None of the curves of the current ECQV algorithms has
+ * one: the NIST prime curves have no efficiently computable endomorphism, and the Koblitz curve
+ * sect233k1 uses its Frobenius map through {@link KoblitzMultiplier} instead.
+ */
+public final class CurveEndomorphisms {
+  /** Number of random scalars a plugin's endomorphism is checked with. */
+  private static final int CHECKS = 4;
+
+  private static final Logger logger = Logger.getLogger(CurveEndomorphisms.class.getName());
+
+  private CurveEndomorphisms() {}
+
+  /**
+   * Returns the GLV endomorphism of a curve.
+   *
+   * @param curve The curve.
+   *
+   * @return The endomorphism, or null if the curve has no GLV endomorphism with an efficient point
+   *         map.
+   */
+  public static GLVEndomorphism getEndomorphism(ECCurve curve) {
+    ECEndomorphism endomorphism = curve.getEndomorphism();
+
+    if (endomorphism instanceof GLVEndomorphism && endomorphism.hasEfficientPointMap()) {
+      return (GLVEndomorphism) endomorphism;
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the parameters of a curve, on a curve configured with the endomorphism of the first
+   * plugin that supplies one, unless Bouncy Castle already builds the curve with one.
+   *
+   * @param curve The curve.
+   * @param curveParameters Parameters of the curve, as built by Bouncy Castle.
+   *
+   * @return The parameters, configured with an endomorphism if one was found.
+   */
+  public static ECParameterSpec configure(CryptoAlgorithms curve, ECParameterSpec curveParameters) {
+    return configure(curve.getAlgorithmName(), curveParameters,
+        ServiceLoader.load(EndomorphismPlugin.class));
+  }
+
+  /**
+   * Returns the parameters of a curve, configured with the endomorphism of the first of the given
+   * plugins that supplies one that holds, unless the curve already has one. Plugins that fail are
+   * skipped with a warning.
+   *
+   * @param curveName Algorithm name of the curve.
+   * @param curveParameters Parameters of the curve.
+   * @param plugins The plugins to ask.
+   *
+   * @return The parameters, configured with an endomorphism if one was found.
+   */
+  static ECParameterSpec configure(String curveName, ECParameterSpec curveParameters,
+      Iterable<EndomorphismPlugin> plugins) {
+    ECCurve curve = curveParameters.getCurve();
+
+    if (getEndomorphism(curve) != null) {
+      return curveParameters;
+    }
+
+    Iterator<EndomorphismPlugin> iterator = plugins.iterator();
+    while (true) {
+      EndomorphismPlugin plugin;
+      GLVEndomorphism endomorphism;
+
+      try {
+        if (!iterator.hasNext()) {
+          return curveParameters;
+        }
+
+        plugin = iterator.next();
+        endomorphism = plugin.getEndomorphism(curveName, curve);
+      } catch (ServiceConfigurationError | RuntimeException ex) {
+        logger.log(Level.WARNING, "Skipping an endomorphism plugin for " + curveName, ex);
+        continue;
+      }
+
+      if (endomorphism == null) {
+        continue;
+      } else if (!holds(curveParameters, endomorphism)) {
+        logger.warning("Skipping the endomorphism from " + plugin.getClass().getName()
+            + ", which does not hold on " + curveName);
+        continue;
+      }
+
+      ECCurve configured = curve.configure().setEndomorphism(endomorphism).create();
+      ECPoint g = configured.importPoint(curveParameters.getG());
+
+      if (curveParameters instanceof ECNamedCurveParameterSpec) {
+        return new ECNamedCurveParameterSpec(
+            ((ECNamedCurveParameterSpec) curveParameters).getName(), configured, g,
+            curveParameters.getN(), curveParameters.getH(), curveParameters.getSeed());
+      }
+
+      return new ECParameterSpec(configured, g, curveParameters.getN(), curveParameters.getH(),
+          curveParameters.getSeed());
+    }
+  }
+
+  /**
+   * Returns whether k0*G + k1*phi(G) = k*G for random scalars k split by the endomorphism,
+   * computed without the endomorphism. An endomorphism built for another field fails inside Bouncy
+   * Castle, and does not hold either.
+   */
+  private static boolean holds(ECParameterSpec curveParameters, GLVEndomorphism endomorphism) {
+    SecureRandom random = new SecureRandom();
+    ECPoint g = curveParameters.getG();
+    BigInteger n = curveParameters.getN();
+
+    try {
+      ECPoint mapped = endomorphism.getPointMap().map(g);
+
+      for (int i = 0; i < CHECKS; i++) {
+        BigInteger k = new BigInteger(n.bitLength(), random).mod(n);
+        BigInteger[] split = endomorphism.decomposeScalar(k);
+        ECPoint sum = ECAlgorithms.referenceMultiply(g, split[0])
+            .add(ECAlgorithms.referenceMultiply(mapped, split[1]));
+
+        if (!sum.equals(ECAlgorithms.referenceMultiply(g, k))) {
+          return false;
+        }
+      }
+    } catch (RuntimeException ex) {
+      return false;
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,96 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.jcajce.provider.util.DigestFactory;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * A {@link NonceSource} deriving k deterministically, as RFC 6979 does for DSA and ECDSA
+ * signatures: an HMAC_DRBG is keyed with the issuer's private key and H(identifyingInfo || Ru), and
+ * its successive outputs are the values of k for successive attempts.
+ *
+ * <p>The same issuer key and request always give the same reconstruction data, so benchmark and
+ * load test results are reproducible, and no random number generator is shared between threads.
+ * Since k depends on every input of the issuance, a value of k is never reused for a different
+ * certificate. Instances are safe for use by multiple concurrent threads.
+ */
+public class DeterministicNonceSource implements NonceSource {
+  private final ThreadLocal<Digest> digests;
+  private final ThreadLocal<HMacDSAKCalculator> calculators;
+  private final ThreadLocal<byte[]> outputs;
+
+  /**
+   * Create a new instance.
+   *
+   * @param algorithm Required. Digest algorithm of the request hash and of the HMAC.
+   *
+   * @throws IllegalArgumentException if Bouncy Castle has no such digest.
+   */
+  public DeterministicNonceSource(final DigestAlgorithms algorithm)
+      throws IllegalArgumentException {
+    final int digestLength = newDigest(algorithm).getDigestSize();
+
+    digests = new ThreadLocal<Digest>() {
+      @Override
+      protected Digest initialValue() {
+        return newDigest(algorithm);
+      }
+    };
+    calculators = new ThreadLocal<HMacDSAKCalculator>() {
+      @Override
+      protected HMacDSAKCalculator initialValue() {
+        return new HMacDSAKCalculator(newDigest(algorithm));
+      }
+    };
+    outputs = new ThreadLocal<byte[]>() {
+      @Override
+      protected byte[] initialValue() {
+        return new byte[digestLength];
+      }
+    };
+  }
+
+  @Override
+  public BigInteger nextNonce(BigInteger n, BigInteger dCa, ByteBuffer identifyingInfo,
+      ECPoint ephemeralPoint, int attempt) {
+    Digest digest = digests.get();
+    byte[] message = outputs.get();
+    int position = identifyingInfo.position();
+
+    if (identifyingInfo.hasArray()) {
+      digest.update(identifyingInfo.array(), identifyingInfo.arrayOffset() + position,
+          identifyingInfo.remaining());
+    } else {
+      while (identifyingInfo.hasRemaining()) {
+        digest.update(identifyingInfo.get());
+      }
+      identifyingInfo.position(position);
+    }
+
+    byte[] point = ephemeralPoint.getEncoded(true);
+    digest.update(point, 0, point.length);
+    digest.doFinal(message, 0);
+
+    HMacDSAKCalculator calculator = calculators.get();
+    calculator.init(n, dCa, message);
+
+    BigInteger k = calculator.nextK();
+    for (int i = 0; i < attempt; i++) {
+      k = calculator.nextK();
+    }
+
+    return k;
+  }
+
+  private static Digest newDigest(DigestAlgorithms algorithm) throws IllegalArgumentException {
+    Digest digest = DigestFactory.getDigest(algorithm.getDigestName());
+
+    if (digest == null) {
+      throw new IllegalArgumentException("Unsupported digest: " + algorithm.getDigestName());
+    }
+
+    return digest;
+  }
+}
@@ -1,3 +1,6 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Enumerates the digest algorithms for the supported signature algorithms.
@@ -24,6 +27,18 @@ public enum DigestAlgorithms {
    */
   SHA512("SHA-512");
 
+  private static final Map<String, DigestAlgorithms> byDigestName;
+
+  static {
+    Map<String, DigestAlgorithms> digestNames = new HashMap<String, DigestAlgorithms>();
+
+    for (DigestAlgorithms algorithm : values()) {
+      digestNames.putIfAbsent(algorithm.digestName, algorithm);
+    }
+
+    byDigestName = Collections.unmodifiableMap(digestNames);
+  }
+
   private final String digestName;
 
   /**
@@ -53,26 +68,12 @@ public enum DigestAlgorithms {
    * @throws IllegalArgumentException if digestName is invalid.
    */
   public static DigestAlgorithms getInstance(String digestName) throws IllegalArgumentException {
-    if (digestName.equals(SHA1.digestName)) {
-      return SHA1;
-    }
-
-    if (digestName.equals(SHA224.digestName)) {
-      return SHA224;
-    }
-
-    if (digestName.equals(SHA256.digestName)) {
-      return SHA256;
-    }
-
-    if (digestName.equals(SHA384.digestName)) {
-      return SHA384;
-    }
+    DigestAlgorithms algorithm = byDigestName.get(digestName);
 
-    if (digestName.equals(SHA512.digestName)) {
-      return SHA512;
+    if (algorithm == null) {
+      throw new IllegalArgumentException("unknow digest name: " + digestName);
     }
 
-    throw new IllegalArgumentException("unknow digest name: " + digestName);
+    return algorithm;
   }
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.prng.EntropySource;
+import org.bouncycastle.crypto.prng.drbg.HMacSP800DRBG;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.BigIntegers;
+import org.bouncycastle.util.Pack;
+
+/**
+ * A {@link NonceSource} drawing k uniformly from [1, n-1] with an HMAC_DRBG (NIST SP 800-90A) per
+ * thread, so issuing threads never contend on a shared random number generator.
+ *
+ * <p>Without a seed, each thread's generator is seeded from a {@link SecureRandom}. With a seed,
+ * the generator of the i-th thread to draw from the source is seeded with the seed and i, so a run
+ * whose threads first draw in the same order produces the same values of k; a single-threaded run
+ * always does. Every draw also takes H(dCa || identifyingInfo || Ru) as the additional input of
+ * the generator, so two sources with the same seed, such as one before and one after a restart,
+ * never draw the same k for different certificates, which would disclose the issuer's private key.
+ * Instances are safe for use by multiple concurrent threads.
+ */
+public class DrbgNonceSource implements NonceSource {
+  /** Security strength of the generators, in bits. */
+  private static final int SECURITY_STRENGTH = 256;
+
+  private final byte[] seed;
+  private final AtomicInteger threadCount = new AtomicInteger();
+  private final ThreadLocal<Digest> digests = new ThreadLocal<Digest>() {
+    @Override
+    protected Digest initialValue() {
+      return new SHA256Digest();
+    }
+  };
+  private final ThreadLocal<HMacSP800DRBG> generators = new ThreadLocal<HMacSP800DRBG>() {
+    @Override
+    protected HMacSP800DRBG initialValue() {
+      return newGenerator(threadCount.getAndIncrement());
+    }
+  };
+
+  /**
+   * Create a new instance whose generators are seeded from a {@link SecureRandom}.
+   */
+  public DrbgNonceSource() {
+    this(null);
+  }
+
+  /**
+   * Create a new instance whose generators are derived from a seed, for reproducible runs. The
+   * values of k are then only as secret as the seed and the issuer's private key.
+   *
+   * @param seed Optional. Seed of at least 32 bytes, or null to seed from a {@link SecureRandom}.
+   *
+   * @throws IllegalArgumentException if the seed is shorter than 32 bytes.
+   */
+  public DrbgNonceSource(byte[] seed) throws IllegalArgumentException {
+    if (seed != null && seed.length * 8 < SECURITY_STRENGTH) {
+      throw new IllegalArgumentException("Seed must be at least 32 bytes: " + seed.length);
+    }
+
+    this.seed = (seed != null) ? seed.clone() : null;
+  }
+
+  @Override
+  public BigInteger nextNonce(BigInteger n, BigInteger dCa, ByteBuffer identifyingInfo,
+      ECPoint ephemeralPoint, int attempt) {
+    HMacSP800DRBG generator = generators.get();
+    byte[] additionalInput = requestHash(n, dCa, identifyingInfo, ephemeralPoint);
+    int bits = n.bitLength();
+    byte[] candidate = new byte[(bits + 7) / 8];
+    BigInteger k;
+
+    // rejection sampling keeps k uniform in [1, n-1]
+    do {
+      if (generator.generate(candidate, additionalInput, false) < 0) {
+        generator.reseed(null);
+        generator.generate(candidate, additionalInput, false);
+      }
+      candidate[0] &= (byte) (0xFF >>> (8 * candidate.length - bits));
+      k = new BigInteger(1, candidate);
+    } while (k.signum() == 0 || k.compareTo(n) >= 0);
+
+    Arrays.fill(candidate, (byte) 0);
+    Arrays.fill(additionalInput, (byte) 0);
+    return k;
+  }
+
+  /** Returns H(dCa || identifyingInfo || Ru), leaving the position of identifyingInfo unchanged. */
+  private byte[] requestHash(BigInteger n, BigInteger dCa, ByteBuffer identifyingInfo,
+      ECPoint ephemeralPoint) {
+    Digest digest = digests.get();
+    byte[] hash = new byte[digest.getDigestSize()];
+    byte[] privateKey = BigIntegers.asUnsignedByteArray(BigIntegers.getUnsignedByteLength(n), dCa);
+    int position = identifyingInfo.position();
+
+    digest.update(privateKey, 0, privateKey.length);
+    Arrays.fill(privateKey, (byte) 0);
+
+    if (identifyingInfo.hasArray()) {
+      digest.update(identifyingInfo.array(), identifyingInfo.arrayOffset() + position,
+          identifyingInfo.remaining());
+    } else {
+      while (identifyingInfo.hasRemaining()) {
+        digest.update(identifyingInfo.get());
+      }
+      identifyingInfo.position(position);
+    }
+
+    byte[] point = ephemeralPoint.getEncoded(true);
+    digest.update(point, 0, point.length);
+    digest.doFinal(hash, 0);
+    return hash;
+  }
+
+  private HMacSP800DRBG newGenerator(int threadIndex) {
+    final byte[] seedEntropy;
+    byte[] personalization = null;
+
+    if (seed != null) {
+      // the first 32 bytes of the seed are the entropy; the rest, and the thread index, personalize
+      seedEntropy = Arrays.copyOf(seed, SECURITY_STRENGTH / 8);
+      personalization = Arrays.copyOfRange(seed, seedEntropy.length, seed.length + 4);
+      Pack.intToBigEndian(threadIndex, personalization, seed.length - seedEntropy.length);
+    } else {
+      seedEntropy = null;
+    }
+
+    EntropySource entropySource = new EntropySource() {
+      private final SecureRandom random = (seedEntropy == null) ? new SecureRandom() : null;
+
+      @Override
+      public boolean isPredictionResistant() {
+        return false;
+      }
+
+      @Override
+      public byte[] getEntropy() {
+        if (random == null) {
+          return seedEntropy.clone();
+        }
+
+        byte[] entropy = new byte[SECURITY_STRENGTH / 8];
+        random.nextBytes(entropy);
+        return entropy;
+      }
+
+      @Override
+      public int entropySize() {
+        return SECURITY_STRENGTH;
+      }
+    };
+
+    return new HMacSP800DRBG(new HMac(new SHA256Digest()), SECURITY_STRENGTH, entropySource,
+        personalization, null);
+  }
+}
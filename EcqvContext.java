@@ -0,0 +1,186 @@
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x9.X962Parameters;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.endo.GLVEndomorphism;
+
+/**
+ * Everything an Elliptic Curve Qu-Vanstone (ECQV) provider needs about its signature algorithm
+ * that does not depend on the provider: the curve parameters, the comb table for the base point,
+ * the scalar field of the curve order, the certificate hasher and the public key algorithm
+ * identifier, and the curve's GLV endomorphism or, on Koblitz curves, tau-adic multiplier.
+ *
+ * <p>One context is built for every ECQV entry of {@link SignatureAlgorithms} when this class is
+ * loaded, so the first provider does not pay for curve lookup, table precomputation or digest
+ * lookup, and constructing further providers only looks the context up. Digests come from a
+ * private Bouncy Castle instance, so contexts can be built before the provider is installed.
+ * Contexts are immutable and safe for use by multiple concurrent threads.
+ */
+public final class EcqvContext {
+  private static final Map<SignatureAlgorithms, EcqvContext> contexts = buildContexts();
+
+  private final SignatureAlgorithms algorithm;
+  private final GeneratorTable generator;
+  private final KoblitzMultiplier koblitzMultiplier;
+  private final ScalarField scalarField;
+  private final CertificateHasher hasher;
+  private final AlgorithmIdentifier algorithmId;
+  private final ThreadLocal<int[][]> scalars;
+
+  /**
+   * Create a new instance.
+   *
+   * @param algorithm An ECQV signature algorithm.
+   * @param digestProvider Security provider supplying the digest.
+   *
+   * @throws NoSuchAlgorithmException if the provider does not implement the digest
+   */
+  private EcqvContext(SignatureAlgorithms algorithm, BouncyCastleProvider digestProvider)
+      throws NoSuchAlgorithmException {
+    X962Parameters x9params = new X962Parameters(new ASN1ObjectIdentifier(algorithm.getSecOid()));
+
+    this.algorithm = algorithm;
+    generator = GeneratorTable.getInstance(algorithm);
+    koblitzMultiplier = KoblitzMultiplier.isKoblitz(generator.getCurveParameters().getCurve())
+        ? new KoblitzMultiplier(generator.getCurveParameters()) : null;
+    scalarField = new ScalarField(generator.getCurveParameters().getN());
+    hasher = new CertificateHasher(algorithm.getDigestAlgorithm(), digestProvider);
+    algorithmId =
+        new AlgorithmIdentifier(X9ObjectIdentifiers.id_ecPublicKey, x9params.toASN1Primitive());
+    scalars = new ThreadLocal<int[][]>() {
+      @Override
+      protected int[][] initialValue() {
+        return new int[][] {
+            scalarField.newElement(), scalarField.newElement(), scalarField.newElement()};
+      }
+    };
+  }
+
+  /**
+   * Returns the context for the given ECQV signature algorithm.
+   *
+   * @param algorithm An ECQV signature algorithm.
+   *
+   * @return The context for the algorithm.
+   * @throws UnsupportedOperationException if the algorithm is not based on ECQV.
+   */
+  public static EcqvContext getInstance(SignatureAlgorithms algorithm)
+      throws UnsupportedOperationException {
+    EcqvContext context = contexts.get(algorithm);
+
+    if (context == null) {
+      throw new UnsupportedOperationException(
+          "Contexts are only available for ECQV-based signature types");
+    }
+
+    return context;
+  }
+
+  /**
+   * Returns the signature algorithm of this context.
+   *
+   * @return Signature algorithm.
+   */
+  public SignatureAlgorithms getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Returns the parameters of the algorithm's curve.
+   *
+   * @return Curve parameters.
+   */
+  public ECParameterSpec getCurveParameters() {
+    return generator.getCurveParameters();
+  }
+
+  /**
+   * Returns the comb table for the base point of the algorithm's curve.
+   *
+   * @return Generator table.
+   */
+  public GeneratorTable getGeneratorTable() {
+    return generator;
+  }
+
+  /**
+   * Returns the GLV endomorphism of the algorithm's curve, which Bouncy Castle and
+   * {@link MultiScalarMultiplier} use to split scalars.
+   *
+   * @return Endomorphism, or null if the curve has none.
+   */
+  public GLVEndomorphism getEndomorphism() {
+    return CurveEndomorphisms.getEndomorphism(generator.getCurveParameters().getCurve());
+  }
+
+  /**
+   * Returns the tau-adic multiplier of the algorithm's curve, if it is a Koblitz curve.
+   *
+   * @return Koblitz multiplier, or null if the curve is not a Koblitz curve.
+   */
+  public KoblitzMultiplier getKoblitzMultiplier() {
+    return koblitzMultiplier;
+  }
+
+  /**
+   * Returns the field of scalars modulo the order of the algorithm's curve.
+   *
+   * @return Scalar field.
+   */
+  public ScalarField getScalarField() {
+    return scalarField;
+  }
+
+  /**
+   * Returns the hasher for implicit certificates, using the algorithm's digest.
+   *
+   * @return Certificate hasher.
+   */
+  public CertificateHasher getHasher() {
+    return hasher;
+  }
+
+  /**
+   * Returns the algorithm identifier of reconstructed public and private keys.
+   *
+   * @return Algorithm identifier.
+   */
+  public AlgorithmIdentifier getAlgorithmIdentifier() {
+    return algorithmId;
+  }
+
+  /**
+   * Returns three scalar field elements owned by the calling thread, as scratch space for a
+   * single operation.
+   *
+   * @return Scalar field elements of the calling thread.
+   */
+  int[][] getScratchScalars() {
+    return scalars.get();
+  }
+
+  private static Map<SignatureAlgorithms, EcqvContext> buildContexts() {
+    Map<SignatureAlgorithms, EcqvContext> contexts =
+        new EnumMap<SignatureAlgorithms, EcqvContext>(SignatureAlgorithms.class);
+    BouncyCastleProvider digestProvider = new BouncyCastleProvider();
+
+    for (SignatureAlgorithms algorithm : SignatureAlgorithms.values()) {
+      if (algorithm.isEcqv()) {
+        try {
+          contexts.put(algorithm, new EcqvContext(algorithm, digestProvider));
+        } catch (NoSuchAlgorithmException ex) {
+          throw new IllegalStateException(
+              "Digest not available: " + algorithm.getDigestAlgorithm().getDigestName(), ex);
+        }
+      }
+    }
+
+    return contexts;
+  }
+}
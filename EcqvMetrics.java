@@ -0,0 +1,92 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An {@link EcqvMetricsListener} that aggregates timings in memory: a {@link LatencyHistogram} for
+ * every operation and for every stage of an operation, per signature algorithm, and a count of
+ * issuance retries per signature algorithm.
+ *
+ * <p>Histograms are created the first time they are recorded to, so only the combinations in use
+ * take memory. One instance may be shared by several providers. Instances are safe for use by
+ * multiple concurrent threads.
+ */
+public class EcqvMetrics implements EcqvMetricsListener {
+  private static final int ALGORITHMS = SignatureAlgorithms.values().length;
+  private static final int OPERATIONS = EcqvOperation.values().length;
+
+  /** Slots per operation: one for each stage, then one for the whole operation. */
+  private static final int SLOTS = EcqvStage.values().length + 1;
+
+  private final AtomicReferenceArray<LatencyHistogram> histograms =
+      new AtomicReferenceArray<LatencyHistogram>(ALGORITHMS * OPERATIONS * SLOTS);
+  private final AtomicLongArray retries = new AtomicLongArray(ALGORITHMS);
+
+  @Override
+  public void stageCompleted(
+      SignatureAlgorithms algorithm, EcqvOperation operation, EcqvStage stage, long nanos) {
+    histogram(index(algorithm, operation, stage.ordinal())).record(nanos);
+  }
+
+  @Override
+  public void operationCompleted(
+      SignatureAlgorithms algorithm, EcqvOperation operation, long nanos, int retryCount) {
+    histogram(index(algorithm, operation, SLOTS - 1)).record(nanos);
+
+    if (retryCount > 0) {
+      retries.addAndGet(algorithm.ordinal(), retryCount);
+    }
+  }
+
+  /**
+   * Returns the latencies of an operation.
+   *
+   * @param algorithm Signature algorithm.
+   * @param operation The operation.
+   *
+   * @return The histogram, whose count is the number of completed operations.
+   */
+  public LatencyHistogram getOperationHistogram(
+      SignatureAlgorithms algorithm, EcqvOperation operation) {
+    return histogram(index(algorithm, operation, SLOTS - 1));
+  }
+
+  /**
+   * Returns the latencies of a stage of an operation.
+   *
+   * @param algorithm Signature algorithm.
+   * @param operation The operation.
+   * @param stage The stage.
+   *
+   * @return The histogram.
+   */
+  public LatencyHistogram getStageHistogram(
+      SignatureAlgorithms algorithm, EcqvOperation operation, EcqvStage stage) {
+    return histogram(index(algorithm, operation, stage.ordinal()));
+  }
+
+  /**
+   * Returns the number of issuance retries.
+   *
+   * @param algorithm Signature algorithm.
+   *
+   * @return Retry count.
+   */
+  public long getRetryCount(SignatureAlgorithms algorithm) {
+    return retries.get(algorithm.ordinal());
+  }
+
+  private static int index(SignatureAlgorithms algorithm, EcqvOperation operation, int slot) {
+    return (algorithm.ordinal() * OPERATIONS + operation.ordinal()) * SLOTS + slot;
+  }
+
+  private LatencyHistogram histogram(int index) {
+    LatencyHistogram histogram = histograms.get(index);
+
+    if (histogram == null) {
+      histograms.compareAndSet(index, null, new LatencyHistogram());
+      histogram = histograms.get(index);
+    }
+
+    return histogram;
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * Receives timings from an {@link EcqvProvider}, set with
+ * {@link EcqvProvider#setMetricsListener}.
+ *
+ * <p>Methods are called on the thread doing the work, inside the timed operation, so
+ * implementations must be safe for use by multiple concurrent threads and should return quickly.
+ * {@link EcqvMetrics} aggregates them into histograms; other implementations can export them.
+ */
+public interface EcqvMetricsListener {
+  /**
+   * Called when a stage of an operation completes. A stage may be reported more than once per
+   * operation, for example when issuance retries.
+   *
+   * @param algorithm Signature algorithm of the provider.
+   * @param operation The operation.
+   * @param stage The completed stage.
+   * @param nanos Duration of the stage in nanoseconds.
+   */
+  void stageCompleted(
+      SignatureAlgorithms algorithm, EcqvOperation operation, EcqvStage stage, long nanos);
+
+  /**
+   * Called when an operation completes successfully.
+   *
+   * @param algorithm Signature algorithm of the provider.
+   * @param operation The operation.
+   * @param nanos Duration of the operation in nanoseconds.
+   * @param retries Number of times the operation had to start over; only issuance retries, when
+   *        e*Pu + dCa*G is the point at infinity.
+   */
+  void operationCompleted(
+      SignatureAlgorithms algorithm, EcqvOperation operation, long nanos, int retries);
+}
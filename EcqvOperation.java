@@ -0,0 +1,25 @@
+/**
+ * Enumerates the {@link EcqvProvider} operations reported to an {@link EcqvMetricsListener}.
+ */
+public enum EcqvOperation {
+  /**
+   * Generating reconstruction data for an implicit certificate.
+   */
+  ISSUANCE,
+  /**
+   * Reconstructing the public key from an implicit certificate.
+   */
+  PUBLIC_KEY_RECONSTRUCTION,
+  /**
+   * Reconstructing the private key from reconstruction data.
+   */
+  PRIVATE_KEY_RECONSTRUCTION,
+  /**
+   * Reconstructing both keys from an implicit certificate and reconstruction data.
+   */
+  KEY_PAIR_RECONSTRUCTION,
+  /**
+   * Confirming that a key pair matches.
+   */
+  KEY_PAIR_VERIFICATION
+}
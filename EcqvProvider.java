@@ -3,40 +3,61 @@
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.bouncycastle.asn1.ASN1Integer;
-import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
-import org.bouncycastle.asn1.x9.X962Parameters;
-import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
 import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPrivateKey;
 import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPublicKey;
-import org.bouncycastle.jce.ECNamedCurveTable;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECCurve;
 import org.bouncycastle.math.ec.ECPoint;
 
 /**
  * Provides functionality to support Elliptic Curve Qu-Vanstone (ECQV) key reconstruction.
+ *
+ * <p>Instances are safe for use by multiple concurrent threads. The curve parameters and algorithm
+ * identifier are immutable, and each thread hashes with its own digest (see
+ * {@link CertificateHasher}). Everything that depends only on the signature algorithm is shared by
+ * all instances through its {@link EcqvContext}, so construction is cheap.
  */
 public class EcqvProvider {
   /** Random number generator to be used for key generation. */
   private static final SecureRandom random = new SecureRandom();
 
-  private MessageDigest digest;
-  private ECParameterSpec curveParameters;
-  private AlgorithmIdentifier algorithmId;
+  /** Bit length of the random multipliers used to confirm key pairs in a batch. */
+  private static final int BATCH_MULTIPLIER_BITS = 128;
+
+  private final SignatureAlgorithms algorithm;
+  private final EcqvContext context;
+  private final CertificateHasher hasher;
+  private final GeneratorTable generator;
+  private final KoblitzMultiplier koblitz;
+  private final ECParameterSpec curveParameters;
+  private final ScalarField scalarField;
+  private final AlgorithmIdentifier algorithmId;
+  private final CaKeyRegistry caKeys;
+  private volatile ReconstructionCache reconstructionCache;
+  private volatile PointDecompressionCache pointDecompressionCache;
+  private volatile MappedCaKeyStore caKeyStore;
+  private volatile EphemeralKeyPool ephemeralKeyPool;
+  private volatile NonceSource nonceSource;
+  private volatile EcqvMetricsListener metricsListener;
+  private volatile ScalarMultiplicationMode scalarMultiplicationMode =
+      ScalarMultiplicationMode.FAST;
 
   /**
    * Create a new instance.
@@ -54,14 +75,15 @@ public class EcqvProvider {
           "This provider can only be used with ECQV-based signature types");
     }
 
-    X962Parameters x9params = new X962Parameters(new ASN1ObjectIdentifier(algorithm.getSecOid()));
-
-    digest = MessageDigest.getInstance(
-        algorithm.getDigestAlgorithm().getDigestName(), BouncyCastleProvider.PROVIDER_NAME);
-    curveParameters =
-        ECNamedCurveTable.getParameterSpec(algorithm.getCryptoAlgorithm().getAlgorithmName());
-    algorithmId =
-        new AlgorithmIdentifier(X9ObjectIdentifiers.id_ecPublicKey, x9params.toASN1Primitive());
+    this.algorithm = algorithm;
+    context = EcqvContext.getInstance(algorithm);
+    hasher = context.getHasher();
+    generator = context.getGeneratorTable();
+    koblitz = context.getKoblitzMultiplier();
+    curveParameters = context.getCurveParameters();
+    scalarField = context.getScalarField();
+    caKeys = new CaKeyRegistry(curveParameters.getCurve());
+    algorithmId = context.getAlgorithmIdentifier();
   }
 
   /**
@@ -76,6 +98,192 @@ public class EcqvProvider {
     this(SignatureAlgorithms.getInstance(algorithmOid), parameters);
   }
 
+  /**
+   * Returns the registry of CA public keys used by {@link #reconstructPublicKey}. Registering the
+   * CA keys that certificates are reconstructed against lets reconstruction reuse their decoded,
+   * normalized points.
+   *
+   * @return the CA public key registry of this provider
+   */
+  public CaKeyRegistry getCaKeyRegistry() {
+    return caKeys;
+  }
+
+  /**
+   * Returns the signature algorithm of this provider.
+   *
+   * @return the signature algorithm
+   */
+  SignatureAlgorithms getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Returns the parameters of the curve this provider works on.
+   *
+   * @return the curve parameters
+   */
+  ECParameterSpec getCurveParameters() {
+    return curveParameters;
+  }
+
+  /**
+   * Returns the cache of reconstructed public keys.
+   *
+   * @return the reconstruction cache, or null if reconstructed public keys are not cached
+   */
+  public ReconstructionCache getReconstructionCache() {
+    return reconstructionCache;
+  }
+
+  /**
+   * Set the cache of reconstructed public keys used by {@link #reconstructPublicKey}.
+   *
+   * @param reconstructionCache Optional. The reconstruction cache, or null to disable caching.
+   */
+  public void setReconstructionCache(ReconstructionCache reconstructionCache) {
+    this.reconstructionCache = reconstructionCache;
+  }
+
+  /**
+   * Returns the cache of decoded reconstruction points.
+   *
+   * @return the point decompression cache, or null if decoded points are not cached
+   */
+  public PointDecompressionCache getPointDecompressionCache() {
+    return pointDecompressionCache;
+  }
+
+  /**
+   * Set the cache of reconstruction points decoded by {@link #reconstructPublicKey}.
+   *
+   * @param pointDecompressionCache Optional. The point decompression cache, or null to disable
+   *        caching.
+   */
+  public void setPointDecompressionCache(PointDecompressionCache pointDecompressionCache) {
+    this.pointDecompressionCache = pointDecompressionCache;
+  }
+
+  /**
+   * Returns the store of CA public keys looked up by key identifier.
+   *
+   * @return the CA key store, or null if CA keys can only be passed as public keys
+   */
+  public MappedCaKeyStore getCaKeyStore() {
+    return caKeyStore;
+  }
+
+  /**
+   * Set the store of CA public keys that {@link #reconstructPublicKey(ByteBuffer, byte[], byte[])}
+   * looks CA keys up in.
+   *
+   * @param caKeyStore Optional. The CA key store, or null to remove it.
+   *
+   * @throws IllegalArgumentException if the store holds keys on a different curve
+   */
+  public void setCaKeyStore(MappedCaKeyStore caKeyStore) throws IllegalArgumentException {
+    if (caKeyStore != null && caKeyStore.getCurve() != algorithm.getCryptoAlgorithm()) {
+      throw new IllegalArgumentException("CA key store is for a different curve");
+    }
+
+    this.caKeyStore = caKeyStore;
+  }
+
+  /**
+   * Returns the pool that CA ephemeral key pairs are taken from.
+   *
+   * @return the ephemeral key pool, or null if key pairs are generated during issuance
+   */
+  public EphemeralKeyPool getEphemeralKeyPool() {
+    return ephemeralKeyPool;
+  }
+
+  /**
+   * Set the pool that {@link #genReconstructionData} takes CA ephemeral key pairs from.
+   *
+   * @param ephemeralKeyPool Optional. The ephemeral key pool, or null to generate key pairs during
+   *        issuance.
+   *
+   * @throws IllegalArgumentException if the pool generates key pairs on a different curve
+   */
+  public void setEphemeralKeyPool(EphemeralKeyPool ephemeralKeyPool)
+      throws IllegalArgumentException {
+    if (ephemeralKeyPool != null && ephemeralKeyPool.getGeneratorTable() != generator) {
+      throw new IllegalArgumentException("Ephemeral key pool is for a different curve");
+    }
+
+    this.ephemeralKeyPool = ephemeralKeyPool;
+  }
+
+  /**
+   * Returns the source of CA ephemeral private values.
+   *
+   * @return the nonce source, or null if ephemeral key pairs are random
+   */
+  public NonceSource getNonceSource() {
+    return nonceSource;
+  }
+
+  /**
+   * Set the source of the CA ephemeral private values k used by {@link #genReconstructionData}.
+   * When set, it is used instead of the ephemeral key pool, since its values may depend on the
+   * request.
+   *
+   * @param nonceSource Optional. The nonce source, or null to use the ephemeral key pool if one is
+   *        set, and otherwise random key pairs.
+   */
+  public void setNonceSource(NonceSource nonceSource) {
+    this.nonceSource = nonceSource;
+  }
+
+  /**
+   * Returns the listener receiving the timings of this provider's operations.
+   *
+   * @return the metrics listener, or null if operations are not timed
+   */
+  public EcqvMetricsListener getMetricsListener() {
+    return metricsListener;
+  }
+
+  /**
+   * Set the listener receiving the timings of issuance, public, private and key pair
+   * reconstruction and {@link #verifyKeyPair}, per stage and per operation. Without a listener the
+   * operations read no clock.
+   *
+   * @param metricsListener Optional. The metrics listener, or null to disable timing.
+   */
+  public void setMetricsListener(EcqvMetricsListener metricsListener) {
+    this.metricsListener = metricsListener;
+  }
+
+  /**
+   * Returns how points are multiplied by secret scalars.
+   *
+   * @return the scalar multiplication mode
+   */
+  public ScalarMultiplicationMode getScalarMultiplicationMode() {
+    return scalarMultiplicationMode;
+  }
+
+  /**
+   * Set how {@link #genReconstructionData} and {@link #verifyKeyPairs} multiply points by secret
+   * scalars. The default is {@link ScalarMultiplicationMode#FAST}; hosts shared with untrusted code
+   * should use {@link ScalarMultiplicationMode#CONSTANT_TIME}. Scalar arithmetic modulo the curve
+   * order is constant-time in both modes.
+   *
+   * @param scalarMultiplicationMode Required. The scalar multiplication mode.
+   *
+   * @throws IllegalArgumentException if the mode is missing
+   */
+  public void setScalarMultiplicationMode(ScalarMultiplicationMode scalarMultiplicationMode)
+      throws IllegalArgumentException {
+    if (scalarMultiplicationMode == null) {
+      throw new IllegalArgumentException("Missing scalar multiplication mode");
+    }
+
+    this.scalarMultiplicationMode = scalarMultiplicationMode;
+  }
+
   /**
    * Generate reconstruction data for an implicit certificate In the terminology of sec4,
    * ephemeralPublicKey is referenced as Ru
@@ -95,57 +303,175 @@ public class EcqvProvider {
       byte[] identifyingInfo, PublicKey ephemeralPublicKey, PrivateKey issuerPrivateKey)
           throws NoSuchAlgorithmException, InvalidAlgorithmParameterException,
           NoSuchProviderException, IOException {
+    return genReconstructionData(
+        ByteBuffer.wrap(identifyingInfo), ephemeralPublicKey, issuerPrivateKey);
+  }
+
+  /**
+   * Generate reconstruction data for an implicit certificate whose identity portion is held in a
+   * buffer. The remaining bytes of the buffer are hashed and its position is unchanged on return.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param ephemeralPublicKey the requesters ephemeral public key
+   * @param issuerPrivateKey the issuers private key
+   *
+   * @return reconstruction data associated with the implicit certificate
+   *
+   * @throws NoSuchAlgorithmException From Bouncy Castle
+   * @throws InvalidAlgorithmParameterException From Bouncy Castle
+   * @throws NoSuchProviderException From Bouncy Castle
+   * @throws IOException
+   */
+  public KeyReconstructionData genReconstructionData(
+      ByteBuffer identifyingInfo, PublicKey ephemeralPublicKey, PrivateKey issuerPrivateKey)
+          throws NoSuchAlgorithmException, InvalidAlgorithmParameterException,
+          NoSuchProviderException, IOException {
+    BigInteger dCa = ((BCECPrivateKey) issuerPrivateKey).getD(); // Private key (point multiplier)
+                                                                 // of the issuer.
+
+    return genReconstructionData(identifyingInfo, toCurvePoint(ephemeralPublicKey), dCa);
+  }
+
+  /**
+   * Generate reconstruction data for a batch of implicit certificates signed by the same issuer.
+   * The issuer's key is decoded once for the batch, but each certificate still costs as much as a
+   * single issuance: its point multiplications depend on its own request, so they cannot be shared,
+   * and they dominate the cost. {@code EcqvProviderBenchmark} compares this method with a loop.
+   *
+   * @param identifyingInfo the identity portions of the implicit certificates
+   * @param ephemeralKeys the requesters ephemeral public keys, in the same order as identifyingInfo
+   * @param issuerKey the issuers private key
+   *
+   * @return reconstruction data for each implicit certificate, in the order of identifyingInfo
+   *
+   * @throws IllegalArgumentException if the two lists are not the same size
+   * @throws NoSuchAlgorithmException From Bouncy Castle
+   * @throws InvalidAlgorithmParameterException From Bouncy Castle
+   * @throws NoSuchProviderException From Bouncy Castle
+   * @throws IOException
+   */
+  public List<KeyReconstructionData> genReconstructionDataBatch(
+      List<byte[]> identifyingInfo, List<PublicKey> ephemeralKeys, PrivateKey issuerKey)
+          throws IllegalArgumentException, NoSuchAlgorithmException,
+          InvalidAlgorithmParameterException, NoSuchProviderException, IOException {
+    if (identifyingInfo.size() != ephemeralKeys.size()) {
+      throw new IllegalArgumentException("Identifying info and ephemeral key counts differ");
+    }
+
+    BigInteger dCa = ((BCECPrivateKey) issuerKey).getD();
+
+    List<KeyReconstructionData> reconstructionData =
+        new ArrayList<KeyReconstructionData>(identifyingInfo.size());
+
+    for (int i = 0; i < identifyingInfo.size(); i++) {
+      reconstructionData.add(genReconstructionData(ByteBuffer.wrap(identifyingInfo.get(i)),
+          toCurvePoint(ephemeralKeys.get(i)), dCa));
+    }
+
+    return reconstructionData;
+  }
+
+  /**
+   * Generate reconstruction data for a single implicit certificate.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param ephemeralPoint the requesters ephemeral public point Ru, on this provider's curve
+   * @param dCa the issuers private key
+   *
+   * @return reconstruction data associated with the implicit certificate
+   *
+   * @throws IOException
+   */
+  KeyReconstructionData genReconstructionData(
+      ByteBuffer identifyingInfo, ECPoint ephemeralPoint, BigInteger dCa) throws IOException {
     // Reconstruction point, in point and byte format
     ECPoint p;
     byte[] reconstructionPoint;
 
-    // CA's ephemeral key pair (k, kG)
-    BCECPublicKey caEphemeralPublicKey;
-    BCECPrivateKey caEphemeralPrivateKey;
-
     BigInteger n = curveParameters.getN(); // get the order of the curve group
-    BigInteger r; // private key recovery data and CA ephemeral private key, respectively.
     BigInteger e; // Integer representation of H(Certu)
-    BigInteger dCa = ((BCECPrivateKey) issuerPrivateKey).getD(); // Private key (point multiplier)
-                                                                 // of the issuer.
+    ECPoint g = curveParameters.getG(); // The base point.
     ECPoint infinity = curveParameters.getCurve().getInfinity(); // The identity point.
 
-    do {
-      // create ephemeral key pair (k, kG)
-      KeyPairGenerator keyGen =
-          KeyPairGenerator.getInstance("ECDSA", BouncyCastleProvider.PROVIDER_NAME);
-      keyGen.initialize(curveParameters, random);
+    EcqvMetricsListener listener = metricsListener;
+    boolean constantTime = scalarMultiplicationMode == ScalarMultiplicationMode.CONSTANT_TIME;
+    NonceSource nonces = nonceSource;
+    long start = startTiming(listener);
+    long time = start;
+    int attempts = 0;
+    boolean valid;
 
-      KeyPair caEphemeralKeyPair = keyGen.generateKeyPair();
-      caEphemeralPrivateKey = (BCECPrivateKey) caEphemeralKeyPair.getPrivate();
-      caEphemeralPublicKey = (BCECPublicKey) caEphemeralKeyPair.getPublic();
+    // e, k and dCa as fixed-width scalars; r = e*k + dCa is computed without BigInteger garbage
+    int[][] elements = context.getScratchScalars();
+    int[] eElement = elements[0];
+    int[] kElement = elements[1];
+    int[] dCaElement = elements[2];
+    scalarField.fromBigInteger(dCa, dCaElement);
 
-      // Compute Pu = Ru + kG
-      // this is the reconstruction point
-      p = ((BCECPublicKey) ephemeralPublicKey).getQ().add(caEphemeralPublicKey.getQ());
+    try {
+      do {
+        // take or create ephemeral key pair (k, kG); it is used once and wiped
+        EphemeralKeyPool pool = ephemeralKeyPool;
+        EphemeralKeyPair caEphemeralKeyPair;
+        if (nonces != null) {
+          caEphemeralKeyPair = EphemeralKeyPair.fromPrivateValue(generator,
+              nonces.nextNonce(n, dCa, identifyingInfo, ephemeralPoint, attempts));
+        } else if (pool != null) {
+          caEphemeralKeyPair = pool.take();
+        } else {
+          caEphemeralKeyPair = EphemeralKeyPair.generate(generator, random);
+        }
+        time = stageCompleted(
+            listener, EcqvOperation.ISSUANCE, EcqvStage.EPHEMERAL_KEY_GENERATION, time);
 
-      reconstructionPoint = p.getEncoded(true);
+        try {
+          scalarField.fromOctetString(caEphemeralKeyPair.getPrivateValueOctets(), kElement);
 
-      // Update the digest with the implicit certificate Certu
-      for (byte b : identifyingInfo) {
-        digest.update(b);
-      }
+          // Compute Pu = Ru + kG
+          // this is the reconstruction point
+          p = ephemeralPoint.add(caEphemeralKeyPair.getPublicPoint());
+        } finally {
+          caEphemeralKeyPair.destroy();
+        }
+        time = stageCompleted(
+            listener, EcqvOperation.ISSUANCE, EcqvStage.POINT_MULTIPLICATION, time);
 
-      // Update digest with reconstruction point data.
-      for (byte b : reconstructionPoint) {
-        digest.update(b);
-      }
+        reconstructionPoint = p.getEncoded(true);
+        time = stageCompleted(listener, EcqvOperation.ISSUANCE, EcqvStage.ENCODING, time);
 
-      // hash the implicit certificate Certu and compute the integer e from H(Certu)
-      e = calculateE(n, digest.digest()).mod(n);
+        // hash the implicit certificate Certu and compute the integer e from H(Certu)
+        byte[] digest = hasher.hash(identifyingInfo, reconstructionPoint);
+        e = calculateE(n, digest);
+        scalarField.fromDigest(digest, eElement);
+        time = stageCompleted(listener, EcqvOperation.ISSUANCE, EcqvStage.HASHING, time);
 
-      // from sec4 S3.4
-    } while (p.multiply(e).add(curveParameters.getG().multiply(dCa)).equals(infinity));
+        // from sec4 S3.4, with e*Pu + dCa*G as one interleaved multiplication, or with dCa*G from
+        // the comb when dCa must not reach the variable-time multipliers
+        if (constantTime) {
+          valid = !p.multiply(e).add(generator.multiply(dCa)).equals(infinity);
+        } else if (koblitz != null) {
+          valid = !koblitz.sumWithGeneratorMultiply(p, e, dCa).equals(infinity);
+        } else {
+          valid = !MultiScalarMultiplier.sumOfTwoMultiplies(p, e, g, dCa).equals(infinity);
+        }
+        time = stageCompleted(
+            listener, EcqvOperation.ISSUANCE, EcqvStage.POINT_MULTIPLICATION, time);
+        attempts++;
+      } while (!valid);
 
-    // compute r = ek + dCA (mod n)
-    r = e.multiply(caEphemeralPrivateKey.getD()).add(dCa).mod(n);
+      // compute r = ek + dCA (mod n)
+      byte[] r = new byte[scalarField.getByteLength()];
+      scalarField.multiplyAdd(eElement, kElement, dCaElement, kElement);
+      scalarField.toOctetString(kElement, r, 0);
+      stageCompleted(listener, EcqvOperation.ISSUANCE, EcqvStage.SCALAR_ARITHMETIC, time);
+      operationCompleted(listener, EcqvOperation.ISSUANCE, start, attempts - 1);
 
-    return new KeyReconstructionData(reconstructionPoint, integerToOctetString(r, n));
+      // both arrays are new, so they are handed over without a copy
+      return KeyReconstructionData.wrap(reconstructionPoint, r);
+    } finally {
+      Arrays.fill(kElement, 0);
+      Arrays.fill(dCaElement, 0);
+    }
   }
 
   /**
@@ -161,29 +487,192 @@ public class EcqvProvider {
    */
   public PublicKey reconstructPublicKey(
       byte[] identifyingInfo, byte[] reconstructionPoint, PublicKey qCa) throws IOException {
-    // Reconstruct the point Pu from the reconstruction point
-    ECPoint rPoint =
-        ((BCECPublicKey) BouncyCastleProvider.getPublicKey(
-            new SubjectPublicKeyInfo(algorithmId, reconstructionPoint))).getQ();
-    BigInteger n = curveParameters.getN(); // curve point order
-    ECPoint caPoint = ((BCECPublicKey) qCa).getQ(); // Massage caPublicKey bytes into ECPoint
+    return reconstructPublicKey(ByteBuffer.wrap(identifyingInfo), reconstructionPoint, qCa);
+  }
+
+  /**
+   * Reconstruct the public key from an implicit certificate whose identity portion is held in a
+   * buffer. The remaining bytes of the buffer are hashed and its position is unchanged on return.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param qCa the CA's public key
+   *
+   * @return the public key reconstructed from the implicit certificate
+   *
+   * @throws IOException errors in provided data
+   */
+  public PublicKey reconstructPublicKey(
+      ByteBuffer identifyingInfo, byte[] reconstructionPoint, PublicKey qCa) throws IOException {
+    EcqvMetricsListener listener = metricsListener;
+    long start = startTiming(listener);
+
+    ECPoint caPoint = caKeys.getPoint(qCa); // Massage caPublicKey bytes into ECPoint
+
+    return reconstructPublicKey(identifyingInfo, reconstructionPoint, caPoint, listener, start);
+  }
 
-    // Calculate H(Certu)
-    for (byte b : identifyingInfo) {
-      digest.update(b);
+  /**
+   * Reconstruct the public key from the implicit certificate and the identifier of the CA's public
+   * key in the CA key store.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param caKeyIdentifier the key identifier of the CA's public key, as in the authority key
+   *        identifier of the certificate (see {@link MappedCaKeyStore#keyIdentifier})
+   *
+   * @return the public key reconstructed from the implicit certificate
+   *
+   * @throws IllegalStateException if no CA key store is set
+   * @throws IOException errors in provided data, or the CA key is not in the store
+   */
+  public PublicKey reconstructPublicKey(
+      byte[] identifyingInfo, byte[] reconstructionPoint, byte[] caKeyIdentifier)
+      throws IllegalStateException, IOException {
+    return reconstructPublicKey(
+        ByteBuffer.wrap(identifyingInfo), reconstructionPoint, caKeyIdentifier);
+  }
+
+  /**
+   * Reconstruct the public key from an implicit certificate whose identity portion is held in a
+   * buffer, and the identifier of the CA's public key in the CA key store. The remaining bytes of
+   * the buffer are hashed and its position is unchanged on return.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param caKeyIdentifier the key identifier of the CA's public key, as in the authority key
+   *        identifier of the certificate (see {@link MappedCaKeyStore#keyIdentifier})
+   *
+   * @return the public key reconstructed from the implicit certificate
+   *
+   * @throws IllegalStateException if no CA key store is set
+   * @throws IOException errors in provided data, or the CA key is not in the store
+   */
+  public PublicKey reconstructPublicKey(
+      ByteBuffer identifyingInfo, byte[] reconstructionPoint, byte[] caKeyIdentifier)
+      throws IllegalStateException, IOException {
+    MappedCaKeyStore store = caKeyStore;
+    if (store == null) {
+      throw new IllegalStateException("No CA key store set");
     }
 
-    for (byte b : reconstructionPoint) {
-      digest.update(b);
+    EcqvMetricsListener listener = metricsListener;
+    long start = startTiming(listener);
+
+    ECPoint caPoint = store.getPoint(curveParameters.getCurve(), caKeyIdentifier);
+    if (caPoint == null) {
+      throw new IOException("CA public key is not in the CA key store");
     }
 
+    return reconstructPublicKey(identifyingInfo, reconstructionPoint, caPoint, listener, start);
+  }
+
+  /**
+   * Reconstruct the public key from the implicit certificate and the CA's point.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param caPoint the CA's public point, on this provider's curve
+   * @param listener the metrics listener, or null
+   * @param start the start time of the operation
+   * @return the public key reconstructed from the implicit certificate
+   *
+   * @throws IOException errors in provided data
+   */
+  private PublicKey reconstructPublicKey(ByteBuffer identifyingInfo, byte[] reconstructionPoint,
+      ECPoint caPoint, EcqvMetricsListener listener, long start) throws IOException {
+    long time = start;
+
+    // A cached key was computed from the same inputs, so it can be returned as is
+    ReconstructionCache cache = reconstructionCache;
+    ByteBuffer cacheKey = null;
+    if (cache != null) {
+      cacheKey = cache.key(
+          hasher.getDigest(), algorithm, identifyingInfo, reconstructionPoint, caPoint);
+
+      PublicKey cachedKey = cache.get(cacheKey);
+      if (cachedKey != null) {
+        operationCompleted(listener, EcqvOperation.PUBLIC_KEY_RECONSTRUCTION, start, 0);
+        return cachedKey;
+      }
+    }
+
+    // Reconstruct the point Pu from the reconstruction point
+    ECPoint rPoint = decodePoint(reconstructionPoint);
+    BigInteger n = curveParameters.getN(); // curve point order
+    time = stageCompleted(
+        listener, EcqvOperation.PUBLIC_KEY_RECONSTRUCTION, EcqvStage.DECODING, time);
+
     // Hash the implicit certificate Certu and compute the integer e from H(Certu)
-    BigInteger e = calculateE(n, digest.digest()).mod(n);
+    BigInteger e = calculateE(n, hasher.hash(identifyingInfo, reconstructionPoint)).mod(n);
+    time = stageCompleted(
+        listener, EcqvOperation.PUBLIC_KEY_RECONSTRUCTION, EcqvStage.HASHING, time);
+
+    // compute the point Qu = ePu + Qca as one interleaved multiplication; the precomputation for a
+    // registered CA point is kept with the point and reused. With a single point to multiply,
+    // Bouncy Castle's own multiplier is as fast as the tau-adic one on Koblitz curves
+    ECPoint qU = MultiScalarMultiplier.sumOfTwoMultiplies(rPoint, e, caPoint, BigInteger.ONE);
+    time = stageCompleted(
+        listener, EcqvOperation.PUBLIC_KEY_RECONSTRUCTION, EcqvStage.POINT_MULTIPLICATION, time);
 
-    // compute the point Qu = ePu + Qca
     SubjectPublicKeyInfo publicKeyInfo =
-        new SubjectPublicKeyInfo(algorithmId, rPoint.multiply(e).add(caPoint).getEncoded(false));
+        new SubjectPublicKeyInfo(algorithmId, qU.getEncoded(false));
+    PublicKey publicKey = BouncyCastleProvider.getPublicKey(publicKeyInfo);
+    stageCompleted(listener, EcqvOperation.PUBLIC_KEY_RECONSTRUCTION, EcqvStage.ENCODING, time);
+
+    if (cache != null) {
+      cache.put(cacheKey, publicKey);
+    }
+
+    operationCompleted(listener, EcqvOperation.PUBLIC_KEY_RECONSTRUCTION, start, 0);
+    return publicKey;
+  }
+
+  /**
+   * Reconstruct the public key of the leaf certificate of an implicit certificate chain.
+   *
+   * <p>Each level computes Qi = ei*Pi + Qi-1, where ei depends only on its own certificate, so the
+   * leaf key is Qroot + e1*P1 + ... + em*Pm. All certificates are hashed first, and the sum is then
+   * computed as one multi-scalar multiplication rather than one multiplication per level. The
+   * keys of intermediate levels are not computed. The root CA point comes from the CA key registry
+   * and reconstruction points from the point decompression cache, when they are there.
+   *
+   * @param chain the implicit certificate chain, of this provider's signature algorithm
+   *
+   * @return the public key reconstructed from the leaf certificate
+   *
+   * @throws IllegalArgumentException if the chain is empty or of another signature algorithm
+   * @throws IOException errors in provided data
+   */
+  public PublicKey reconstructPublicKey(ImplicitCertificateChain chain)
+      throws IllegalArgumentException, IOException {
+    if (chain.getAlgorithm() != algorithm) {
+      throw new IllegalArgumentException("Chain is for a different signature algorithm");
+    } else if (chain.size() == 0) {
+      throw new IllegalArgumentException("Chain has no certificates");
+    }
+
+    int levels = chain.size();
+    BigInteger n = curveParameters.getN(); // curve point order
+    ECPoint[] points = new ECPoint[levels + 1];
+    BigInteger[] multipliers = new BigInteger[levels + 1];
+
+    for (int i = 0; i < levels; i++) {
+      byte[] reconstructionPoint = chain.getReconstructionPoint(i);
+      points[i] = decodePoint(reconstructionPoint);
+      multipliers[i] =
+          calculateE(n, hasher.hash(chain.getIdentifyingInfo(i), reconstructionPoint)).mod(n);
+    }
+    points[levels] = caKeys.getPoint(chain.getRootKey());
+    multipliers[levels] = BigInteger.ONE;
 
+    ECPoint qU = sumOfMultiplies(points, multipliers);
+    if (qU.isInfinity()) {
+      throw new IOException("Reconstructed public key is the point at infinity");
+    }
+
+    SubjectPublicKeyInfo publicKeyInfo =
+        new SubjectPublicKeyInfo(algorithmId, qU.getEncoded(false));
     return BouncyCastleProvider.getPublicKey(publicKeyInfo);
   }
 
@@ -203,37 +692,190 @@ public class EcqvProvider {
   public PrivateKey reconstructPrivateKey(
       byte[] identifyingInfo, byte[] reconstructionPoint, byte[] privateKeyReconstructionData,
       PrivateKey ephemeralPrivateKey) throws IOException {
-    // curve point order
-    BigInteger n = curveParameters.getN();
+    return reconstructPrivateKey(ByteBuffer.wrap(identifyingInfo), reconstructionPoint,
+        privateKeyReconstructionData, ephemeralPrivateKey);
+  }
 
-    // calculate H(Certu)
-    for (byte b : identifyingInfo) {
-      digest.update(b);
-    }
+  /**
+   * Reconstruct the private key from the reconstruction data of an implicit certificate whose
+   * identity portion is held in a buffer. The remaining bytes of the buffer are hashed and its
+   * position is unchanged on return.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param privateKeyReconstructionData the private key reconstruction data associated with the
+   *        implicit certificate
+   * @param ephemeralPrivateKey the requesters ephemeral private key
+   *
+   * @return the private key associated with the implicit certificate
+   *
+   * @throws IOException when there are errors with, or malformed provided data
+   */
+  public PrivateKey reconstructPrivateKey(
+      ByteBuffer identifyingInfo, byte[] reconstructionPoint, byte[] privateKeyReconstructionData,
+      PrivateKey ephemeralPrivateKey) throws IOException {
+    return reconstructPrivateKey(identifyingInfo, ByteBuffer.wrap(reconstructionPoint),
+        ByteBuffer.wrap(privateKeyReconstructionData), ephemeralPrivateKey);
+  }
 
-    for (byte b : reconstructionPoint) {
-      digest.update(b);
-    }
+  /**
+   * Reconstruct the private key from reconstruction data held in buffers, such as those of a
+   * {@link KeyReconstructionDataView}, without copying it. The remaining bytes of each buffer are
+   * read and their positions are unchanged on return.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param privateKeyReconstructionData the private key reconstruction data associated with the
+   *        implicit certificate
+   * @param ephemeralPrivateKey the requesters ephemeral private key
+   *
+   * @return the private key associated with the implicit certificate
+   *
+   * @throws IOException when there are errors with, or malformed provided data
+   */
+  public PrivateKey reconstructPrivateKey(
+      ByteBuffer identifyingInfo, ByteBuffer reconstructionPoint,
+      ByteBuffer privateKeyReconstructionData, PrivateKey ephemeralPrivateKey) throws IOException {
+    // e, r and kU as fixed-width scalars modulo the curve point order
+    int[][] elements = context.getScratchScalars();
+    int[] e = elements[0];
+    int[] r = elements[1];
+    int[] dU = elements[2];
+
+    EcqvMetricsListener listener = metricsListener;
+    long start = startTiming(listener);
 
     // compute the integer e from H(Certu)
-    BigInteger e = calculateE(n, digest.digest()).mod(n);
+    scalarField.fromDigest(hasher.hash(identifyingInfo, reconstructionPoint), e);
+    long time = stageCompleted(
+        listener, EcqvOperation.PRIVATE_KEY_RECONSTRUCTION, EcqvStage.HASHING, start);
+
+    // Check that the 'r' is less than 'n'
+    if (!scalarField.fromOctetString(privateKeyReconstructionData, r)) {
+      throw new IOException("Octet String value is larger than modulus");
+    }
 
     // compute the private Key dU = r + e*kU (mod n)
-    BigInteger r = octetStringToInteger(privateKeyReconstructionData);
+    BigInteger privateKey;
+    try {
+      scalarField.fromBigInteger(((BCECPrivateKey) ephemeralPrivateKey).getD(), dU);
+      scalarField.multiplyAdd(e, dU, r, dU);
+      privateKey = scalarField.toBigInteger(dU);
+    } finally {
+      Arrays.fill(dU, 0);
+    }
+    time = stageCompleted(
+        listener, EcqvOperation.PRIVATE_KEY_RECONSTRUCTION, EcqvStage.SCALAR_ARITHMETIC, time);
+
+    PrivateKey reconstructedKey = BouncyCastleProvider.getPrivateKey(
+        new PrivateKeyInfo(algorithmId, new ASN1Integer(privateKey)));
+    stageCompleted(listener, EcqvOperation.PRIVATE_KEY_RECONSTRUCTION, EcqvStage.ENCODING, time);
+    operationCompleted(listener, EcqvOperation.PRIVATE_KEY_RECONSTRUCTION, start, 0);
+
+    return reconstructedKey;
+  }
+
+  /**
+   * Reconstruct the key pair of an implicit certificate, as {@link #reconstructPublicKey},
+   * {@link #reconstructPrivateKey} and {@link #verifyKeyPair} together would.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param privateKeyReconstructionData the private key reconstruction data associated with the
+   *        implicit certificate
+   * @param ephemeralPrivateKey the requesters ephemeral private key
+   * @param qCa the CA's public key
+   *
+   * @return the public and private keys associated with the implicit certificate
+   *
+   * @throws IOException when there are errors with, or malformed provided data, or the keys do not
+   *         match
+   */
+  public KeyPair reconstructKeyPair(
+      byte[] identifyingInfo, byte[] reconstructionPoint, byte[] privateKeyReconstructionData,
+      PrivateKey ephemeralPrivateKey, PublicKey qCa) throws IOException {
+    return reconstructKeyPair(ByteBuffer.wrap(identifyingInfo), reconstructionPoint,
+        privateKeyReconstructionData, ephemeralPrivateKey, qCa);
+  }
+
+  /**
+   * Reconstruct the key pair of an implicit certificate whose identity portion is held in a buffer.
+   * The remaining bytes of the buffer are hashed and its position is unchanged on return.
+   *
+   * <p>Certu is hashed and the reconstruction point decoded once. The private key dU = r + e*kU
+   * gives the public key Qu = dU*G from the generator table, and the keys are confirmed to match by
+   * checking Qu = e*Pu + Qca with one interleaved multiplication, so no further multiplication of G
+   * is needed as with {@link #verifyKeyPair}.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param privateKeyReconstructionData the private key reconstruction data associated with the
+   *        implicit certificate
+   * @param ephemeralPrivateKey the requesters ephemeral private key
+   * @param qCa the CA's public key
+   *
+   * @return the public and private keys associated with the implicit certificate
+   *
+   * @throws IOException when there are errors with, or malformed provided data, or the keys do not
+   *         match
+   */
+  public KeyPair reconstructKeyPair(
+      ByteBuffer identifyingInfo, byte[] reconstructionPoint, byte[] privateKeyReconstructionData,
+      PrivateKey ephemeralPrivateKey, PublicKey qCa) throws IOException {
+    // e, r and kU as fixed-width scalars modulo the curve point order
+    int[][] elements = context.getScratchScalars();
+    int[] e = elements[0];
+    int[] r = elements[1];
+    int[] dU = elements[2];
+
+    EcqvMetricsListener listener = metricsListener;
+    long start = startTiming(listener);
+
+    ECPoint rPoint = decodePoint(reconstructionPoint);
+    ECPoint caPoint = caKeys.getPoint(qCa);
+    long time =
+        stageCompleted(listener, EcqvOperation.KEY_PAIR_RECONSTRUCTION, EcqvStage.DECODING, start);
+
+    // compute the integer e from H(Certu)
+    scalarField.fromDigest(hasher.hash(identifyingInfo, reconstructionPoint), e);
+    time = stageCompleted(listener, EcqvOperation.KEY_PAIR_RECONSTRUCTION, EcqvStage.HASHING, time);
 
     // Check that the 'r' is less than 'n'
-    if (n.compareTo(r) != 1) {
+    if (!scalarField.fromOctetString(privateKeyReconstructionData, r)) {
       throw new IOException("Octet String value is larger than modulus");
     }
 
-    // Private key dU.
-    BigInteger dU = ((BCECPrivateKey) ephemeralPrivateKey).getD();
-    dU = e.multiply(dU);
-    dU = r.add(dU);
-    dU = dU.mod(n);
+    // compute the private Key dU = r + e*kU (mod n)
+    BigInteger privateKey;
+    try {
+      scalarField.fromBigInteger(((BCECPrivateKey) ephemeralPrivateKey).getD(), dU);
+      scalarField.multiplyAdd(e, dU, r, dU);
+      privateKey = scalarField.toBigInteger(dU);
+    } finally {
+      Arrays.fill(dU, 0);
+    }
+    time = stageCompleted(
+        listener, EcqvOperation.KEY_PAIR_RECONSTRUCTION, EcqvStage.SCALAR_ARITHMETIC, time);
+
+    // Qu = dU*G from the generator table, confirmed against Qu = e*Pu + Qca
+    ECPoint qU = generator.multiply(privateKey);
+    if (qU.isInfinity() || !qU.equals(
+        MultiScalarMultiplier.sumOfTwoMultiplies(
+            rPoint, scalarField.toBigInteger(e), caPoint, BigInteger.ONE))) {
+      throw new IOException("Reconstructed public and private keys do not match");
+    }
+    time = stageCompleted(
+        listener, EcqvOperation.KEY_PAIR_RECONSTRUCTION, EcqvStage.POINT_MULTIPLICATION, time);
+
+    KeyPair keyPair = new KeyPair(
+        BouncyCastleProvider.getPublicKey(
+            new SubjectPublicKeyInfo(algorithmId, qU.getEncoded(false))),
+        BouncyCastleProvider.getPrivateKey(
+            new PrivateKeyInfo(algorithmId, new ASN1Integer(privateKey))));
+    stageCompleted(listener, EcqvOperation.KEY_PAIR_RECONSTRUCTION, EcqvStage.ENCODING, time);
+    operationCompleted(listener, EcqvOperation.KEY_PAIR_RECONSTRUCTION, start, 0);
 
-    return BouncyCastleProvider.getPrivateKey(
-        new PrivateKeyInfo(algorithmId, new ASN1Integer(dU.toByteArray())));
+    return keyPair;
   }
 
   /**
@@ -246,81 +888,269 @@ public class EcqvProvider {
    * @return true for successful confirmation, false otherwise
    */
   public boolean verifyKeyPair(PublicKey derivedPublicKey, PrivateKey derivedPrivateKey) {
+    EcqvMetricsListener listener = metricsListener;
+    long start = startTiming(listener);
+
     // confirm equality
-    return (
-        ((BCECPublicKey) derivedPublicKey).getQ().equals(
-            curveParameters.getG().multiply(((BCECPrivateKey) derivedPrivateKey).getD())));
+    boolean verified = (
+        toCurvePoint(derivedPublicKey).equals(
+            multiplyPrivateKey(((BCECPrivateKey) derivedPrivateKey).getD())));
+    stageCompleted(
+        listener, EcqvOperation.KEY_PAIR_VERIFICATION, EcqvStage.POINT_MULTIPLICATION, start);
+    operationCompleted(listener, EcqvOperation.KEY_PAIR_VERIFICATION, start, 0);
+
+    return verified;
   }
 
   /**
-   * Compute the integer e from H(Certu)
+   * Confirm that each pair of derived public key qU and derived private key dU satisfies qU = dU*G.
    *
-   * @param n Curve order.
-   * @param messageDigest Message digest.
-   * @return e value.
+   * <p>The whole batch is checked at once with a random linear combination: for random 128-bit
+   * multipliers l, sum(l*qU) = (sum(l*dU) mod n)*G holds for all pairs, and fails with probability
+   * at least 1 - 2^-128 if any pair is wrong. A failing batch is bisected to find the failing
+   * pairs. On curves with a cofactor greater than one a point may carry a small-order component
+   * that the combination can cancel, so those curves confirm each pair separately, as does the
+   * {@link ScalarMultiplicationMode#CONSTANT_TIME} mode.
+   *
+   * @param derivedPublicKeys the recovered public keys
+   * @param derivedPrivateKeys the recovered private keys, in the same order as derivedPublicKeys
+   *
+   * @return for each pair, true for successful confirmation, false otherwise
+   *
+   * @throws IllegalArgumentException if the two lists are not the same size
    */
-  private BigInteger calculateE(BigInteger n, byte[] messageDigest) {
-    // n.bitLength() == ceil(log2(n < 0 ? -n : n+1)
-    // we actually want floor(log_2(n)) which is n.bitLength()-1
-    int log2n = n.bitLength() - 1;
-    int messageBitLength = messageDigest.length * 8;
+  public boolean[] verifyKeyPairs(List<PublicKey> derivedPublicKeys,
+      List<PrivateKey> derivedPrivateKeys) throws IllegalArgumentException {
+    if (derivedPublicKeys.size() != derivedPrivateKeys.size()) {
+      throw new IllegalArgumentException("Public and private key counts differ");
+    }
 
-    if (log2n >= messageBitLength) {
-      return new BigInteger(1, messageDigest);
+    int count = derivedPublicKeys.size();
+    if (count == 0) {
+      return new boolean[0];
+    }
+
+    ECPoint[] qU = new ECPoint[count];
+    BigInteger[] dU = new BigInteger[count];
+    boolean[] verified = new boolean[count];
+
+    for (int i = 0; i < count; i++) {
+      qU[i] = toCurvePoint(derivedPublicKeys.get(i));
+      dU[i] = ((BCECPrivateKey) derivedPrivateKeys.get(i)).getD();
+    }
+
+    // the combination is computed with BigInteger arithmetic on the private keys, so the
+    // constant-time mode confirms each pair with the comb instead
+    if (curveParameters.getH().equals(BigInteger.ONE)
+        && scalarMultiplicationMode == ScalarMultiplicationMode.FAST) {
+      verifyKeyPairs(qU, dU, 0, count, verified);
     } else {
-      BigInteger trunc = new BigInteger(1, messageDigest);
+      for (int i = 0; i < count; i++) {
+        verified[i] = qU[i].equals(multiplyPrivateKey(dU[i]));
+      }
+    }
 
-      trunc = trunc.shiftRight(messageBitLength - log2n);
+    return verified;
+  }
 
-      return trunc;
+  /**
+   * Confirm the key pairs in [from, to) with one random linear combination, bisecting on failure.
+   *
+   * @param qU the recovered public points
+   * @param dU the recovered private keys
+   * @param from first pair to confirm
+   * @param to end of the pairs to confirm, exclusive
+   * @param verified receives the result for each confirmed pair
+   */
+  private void verifyKeyPairs(
+      ECPoint[] qU, BigInteger[] dU, int from, int to, boolean[] verified) {
+    int count = to - from;
+
+    if (count == 1) {
+      verified[from] = qU[from].equals(generator.multiply(dU[from]));
+      return;
+    }
+
+    BigInteger n = curveParameters.getN();
+    ECPoint[] points = new ECPoint[count];
+    BigInteger[] multipliers = new BigInteger[count];
+    BigInteger t = BigInteger.ZERO;
+
+    for (int i = 0; i < count; i++) {
+      points[i] = qU[from + i];
+      multipliers[i] = new BigInteger(BATCH_MULTIPLIER_BITS, random);
+      t = t.add(multipliers[i].multiply(dU[from + i]));
+    }
+
+    // sum(l*qU) in one multi-scalar multiplication, sum(l*dU)*G from the generator table
+    if (MultiScalarMultiplier.sumOfMultiplies(points, multipliers)
+        .equals(generator.multiply(t.mod(n)))) {
+      for (int i = from; i < to; i++) {
+        verified[i] = true;
+      }
+    } else {
+      int middle = from + count / 2;
+      verifyKeyPairs(qU, dU, from, middle, verified);
+      verifyKeyPairs(qU, dU, middle, to, verified);
+    }
+  }
+
+  /**
+   * Computes k1*P1 + k2*P2 + ... + kn*Pn, with the tau-adic multiplier on Koblitz curves when at
+   * least two points have a multiplier other than one. A single such point is multiplied faster
+   * by Bouncy Castle's own multiplier.
+   *
+   * @param points the points
+   * @param multipliers the multiplier of each point
+   * @return the sum of the scalar multiples
+   */
+  private ECPoint sumOfMultiplies(ECPoint[] points, BigInteger[] multipliers) {
+    if (koblitz != null) {
+      int multiplied = 0;
+      for (BigInteger multiplier : multipliers) {
+        if (!multiplier.equals(BigInteger.ONE)) {
+          multiplied++;
+        }
+      }
+
+      if (multiplied > 1) {
+        return koblitz.sumOfMultiplies(points, multipliers);
+      }
+    }
+
+    return MultiScalarMultiplier.sumOfMultiplies(points, multipliers);
+  }
+
+  /**
+   * Computes dU*G for a private key being confirmed: with the tau-adic multiplier on Koblitz curves
+   * in the {@link ScalarMultiplicationMode#FAST} mode, and from the comb otherwise.
+   *
+   * @param dU the private key
+   * @return the point dU*G
+   */
+  private ECPoint multiplyPrivateKey(BigInteger dU) {
+    if (koblitz != null && scalarMultiplicationMode == ScalarMultiplicationMode.FAST) {
+      return koblitz.multiplyGenerator(dU);
+    }
+
+    return generator.multiply(dU);
+  }
+
+  /**
+   * Returns the start time of an operation.
+   *
+   * @param listener the metrics listener, or null
+   * @return the current time, or zero without a listener
+   */
+  private static long startTiming(EcqvMetricsListener listener) {
+    return (listener != null) ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Report a completed stage to the metrics listener, if any.
+   *
+   * @param listener the metrics listener, or null
+   * @param operation the operation
+   * @param stage the completed stage
+   * @param since start time of the stage
+   * @return the current time, which starts the next stage, or zero without a listener
+   */
+  private long stageCompleted(
+      EcqvMetricsListener listener, EcqvOperation operation, EcqvStage stage, long since) {
+    if (listener == null) {
+      return 0;
     }
+
+    long now = System.nanoTime();
+    listener.stageCompleted(algorithm, operation, stage, now - since);
+
+    return now;
   }
 
   /**
-   * Convert an octet string to a {@link java.math.BigInteger BigInteger}.
+   * Report a completed operation to the metrics listener, if any.
    *
-   * @param os the octet string
-   * @return The {@link java.math.BigInteger BigInteger} value.
+   * @param listener the metrics listener, or null
+   * @param operation the operation
+   * @param start start time of the operation
+   * @param retries number of times the operation started over
    */
-  private BigInteger octetStringToInteger(byte[] os) {
-    int osLen = os.length;
-    byte[] osSigned;
+  private void operationCompleted(
+      EcqvMetricsListener listener, EcqvOperation operation, long start, int retries) {
+    if (listener != null) {
+      listener.operationCompleted(algorithm, operation, System.nanoTime() - start, retries);
+    }
+  }
 
-    // Always prepend 0x00 byte to make it positive signed integer
-    // (instead of checking the length of 'os' & 'modulus')
-    osSigned = new byte[osLen + 1];
-    System.arraycopy(os, 0, osSigned, 1, osLen);
-    return new BigInteger(osSigned);
+  /**
+   * Returns the point of the given public key on this provider's curve. Keys created from a
+   * different parameter spec for the same named curve may carry another curve implementation.
+   *
+   * @param publicKey an EC public key on this provider's curve
+   * @return the key's point, as a point of this provider's curve
+   */
+  private ECPoint toCurvePoint(PublicKey publicKey) {
+    return curveParameters.getCurve().importPoint(((BCECPublicKey) publicKey).getQ());
   }
 
   /**
-   * Converts the given integer value and the given modulus to an octet string.
+   * Decode a point on this provider's curve, from the point decompression cache if one is set.
+   *
+   * @param encoded the encoded point, compressed or not
+   * @return the point
    *
-   * @param r Integer value to convert.
-   * @param modulus Modulus to convert.
-   * @return Octet string representing r and modulus.
-   * @throws IOException if r is greater than modulus.
+   * @throws IOException if the encoding is not a finite point of the curve
    */
-  private byte[] integerToOctetString(BigInteger r, BigInteger modulus) throws IOException {
-    byte[] modulusBytes = modulus.toByteArray();
-    int modulusLen = modulusBytes.length;
-    byte[] rBytes = r.toByteArray();
-    int rLen = rBytes.length;
-    int rMSB = rBytes[0] & 0xFF;
+  private ECPoint decodePoint(byte[] encoded) throws IOException {
+    ECCurve curve = curveParameters.getCurve();
+    PointDecompressionCache cache = pointDecompressionCache;
 
-    if (modulusBytes[0] == 0x00) {
-      modulusLen -= 1;
+    if (cache != null) {
+      ECPoint point = cache.get(curve, encoded);
+      if (point != null) {
+        return point;
+      }
     }
 
-    // for arrays that are more than one byte longer
-    if ((rLen == modulusLen + 1 && rMSB != 0x00) || rLen > modulusLen + 1) {
-      throw new IOException("Integer value is larger than modulus");
+    ECPoint point;
+    try {
+      point = curve.decodePoint(encoded);
+    } catch (IllegalArgumentException ex) {
+      throw new IOException("Invalid reconstruction point", ex);
     }
 
-    byte[] rUnsigned = new byte[modulusLen];
-    System.arraycopy(rBytes, (rLen > modulusLen) ? (rLen - modulusLen) : 0, rUnsigned,
-        (modulusLen > rLen) ? (modulusLen - rLen) : 0, (modulusLen > rLen) ? rLen : modulusLen);
+    if (point.isInfinity()) {
+      throw new IOException("Invalid reconstruction point");
+    }
 
-    return rUnsigned;
+    if (cache != null) {
+      cache.put(encoded, point);
+    }
+
+    return point;
+  }
+
+  /**
+   * Compute the integer e from H(Certu)
+   *
+   * @param n Curve order.
+   * @param messageDigest Message digest.
+   * @return e value.
+   */
+  private BigInteger calculateE(BigInteger n, byte[] messageDigest) {
+    // n.bitLength() == ceil(log2(n < 0 ? -n : n+1)
+    // we actually want floor(log_2(n)) which is n.bitLength()-1
+    int log2n = n.bitLength() - 1;
+    int messageBitLength = messageDigest.length * 8;
+
+    if (log2n >= messageBitLength) {
+      return new BigInteger(1, messageDigest);
+    } else {
+      BigInteger trunc = new BigInteger(1, messageDigest);
+
+      trunc = trunc.shiftRight(messageBitLength - log2n);
+
+      return trunc;
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,155 @@
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Warm throughput of the {@link EcqvProvider} operations for every ECQV entry of
+ * {@link SignatureAlgorithms}.
+ *
+ * <p>One provider is shared by all benchmark threads, as in an issuance service. Run with
+ * {@code -t 1,2,4,...} to measure multi-threaded scaling, and with {@code -prof gc} to report the
+ * allocation per operation. The mode parameter gives the throughput cost of the constant-time
+ * scalar multiplication mode against the fast one. The two batch benchmarks issue
+ * {@value #BATCH_SIZE} certificates per invocation, with
+ * {@link EcqvProvider#genReconstructionDataBatch} and with a loop of single issuances, and report
+ * the throughput per certificate of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EcqvProviderBenchmark {
+  /** Number of certificates issued by one invocation of the batch benchmarks. */
+  public static final int BATCH_SIZE = 64;
+
+  @Param({
+      "ECQV_SHA256_SECP192R1",
+      "ECQV_SHA256_SECP224R1",
+      "ECQV_SHA256_SECT233K1",
+      "ECQV_SHA256_SECT233R1",
+      "ECQV_SHA256_SECP256R1",
+      "ECQV_SHA384_SECP384R1",
+      "ECQV_SHA512_SECP521R1"})
+  public String algorithm;
+
+  @Param({"FAST", "CONSTANT_TIME"})
+  public String mode;
+
+  private EcqvProvider provider;
+  private byte[] identifyingInfo;
+  private KeyPair caKeyPair;
+  private KeyPair devicePair;
+  private KeyReconstructionData keyReconData;
+  private PublicKey reconstructedPublicKey;
+  private PrivateKey reconstructedPrivateKey;
+  private List<byte[]> batchIdentifyingInfo;
+  private List<PublicKey> batchEphemeralKeys;
+
+  @Setup
+  public void setUp() throws Exception {
+    Security.addProvider(new BouncyCastleProvider());
+
+    SignatureAlgorithms signatureAlgorithm = SignatureAlgorithms.valueOf(algorithm);
+    provider = new EcqvProvider(signatureAlgorithm, null);
+    provider.setScalarMultiplicationMode(ScalarMultiplicationMode.valueOf(mode));
+
+    KeyPairGenerator g =
+        KeyPairGenerator.getInstance("ECDSA", BouncyCastleProvider.PROVIDER_NAME);
+    g.initialize(
+        GeneratorTable.getInstance(signatureAlgorithm).getCurveParameters(), new SecureRandom());
+    caKeyPair = g.generateKeyPair();
+    devicePair = g.generateKeyPair();
+
+    // A typical M2M certificate body
+    identifyingInfo = new byte[256];
+    new SecureRandom().nextBytes(identifyingInfo);
+
+    keyReconData = provider.genReconstructionData(
+        identifyingInfo, devicePair.getPublic(), caKeyPair.getPrivate());
+    reconstructedPublicKey = provider.reconstructPublicKey(
+        identifyingInfo, keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+    reconstructedPrivateKey = provider.reconstructPrivateKey(identifyingInfo,
+        keyReconData.getPublicKeyReconstructionData(),
+        keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate());
+
+    if (!provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey)) {
+      throw new IllegalStateException("Reconstructed key pair does not verify");
+    }
+
+    batchIdentifyingInfo = new ArrayList<byte[]>(BATCH_SIZE);
+    batchEphemeralKeys = new ArrayList<PublicKey>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      byte[] batchInfo = identifyingInfo.clone();
+      batchInfo[0] = (byte) i;
+      batchIdentifyingInfo.add(batchInfo);
+      batchEphemeralKeys.add(g.generateKeyPair().getPublic());
+    }
+  }
+
+  @Benchmark
+  public KeyReconstructionData genReconstructionData() throws Exception {
+    return provider.genReconstructionData(
+        identifyingInfo, devicePair.getPublic(), caKeyPair.getPrivate());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public List<KeyReconstructionData> genReconstructionDataBatch() throws Exception {
+    return provider.genReconstructionDataBatch(
+        batchIdentifyingInfo, batchEphemeralKeys, caKeyPair.getPrivate());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public List<KeyReconstructionData> genReconstructionDataLoop() throws Exception {
+    List<KeyReconstructionData> reconstructionData =
+        new ArrayList<KeyReconstructionData>(BATCH_SIZE);
+
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      reconstructionData.add(provider.genReconstructionData(
+          batchIdentifyingInfo.get(i), batchEphemeralKeys.get(i), caKeyPair.getPrivate()));
+    }
+
+    return reconstructionData;
+  }
+
+  @Benchmark
+  public PublicKey reconstructPublicKey() throws Exception {
+    return provider.reconstructPublicKey(
+        identifyingInfo, keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+  }
+
+  @Benchmark
+  public PrivateKey reconstructPrivateKey() throws Exception {
+    return provider.reconstructPrivateKey(identifyingInfo,
+        keyReconData.getPublicKeyReconstructionData(),
+        keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate());
+  }
+
+  @Benchmark
+  public boolean verifyKeyPair() {
+    return provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey);
+  }
+}
@@ -1,22 +1,51 @@
 import static org.junit.Assert.assertTrue;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.Security;
 import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.sec.SECObjectIdentifiers;
+import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPublicKey;
 import org.bouncycastle.jce.ECNamedCurveTable;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.endo.GLVEndomorphism;
+import org.bouncycastle.util.BigIntegers;
 import org.bouncycastle.util.encoders.Hex;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -226,4 +255,1506 @@ public class EcqvProviderTest {
     double percent =  ((double) (totalTime2 - totalTime))/totalTime2 *100.0;
     System.out.println("IC is approximately " + percent + "% faster");
   }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.EcqvProvider#genReconstructionDataBatch}
+   */
+  @Test
+  public void testReconstructionDataBatch() throws Exception {
+    int batchSize = 500;
+
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+
+    List<byte[]> identifyingInfo = new ArrayList<byte[]>(batchSize);
+    List<KeyPair> devicePairs = new ArrayList<KeyPair>(batchSize);
+    List<PublicKey> ephemeralKeys = new ArrayList<PublicKey>(batchSize);
+
+    for (int i = 0; i < batchSize; i++) {
+      KeyPair pair = g.generateKeyPair();
+      identifyingInfo.add(("device-" + i).getBytes("UTF8"));
+      devicePairs.add(pair);
+      ephemeralKeys.add(pair.getPublic());
+    }
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+
+    // warm up both paths before timing them
+    provider.genReconstructionDataBatch(identifyingInfo, ephemeralKeys, caKeyPair.getPrivate());
+    for (int i = 0; i < batchSize; i++) {
+      provider.genReconstructionData(
+          identifyingInfo.get(i), ephemeralKeys.get(i), caKeyPair.getPrivate());
+    }
+
+    long startTime = System.nanoTime();
+    for (int i = 0; i < batchSize; i++) {
+      provider.genReconstructionData(
+          identifyingInfo.get(i), ephemeralKeys.get(i), caKeyPair.getPrivate());
+    }
+    long loopTime = System.nanoTime() - startTime;
+
+    startTime = System.nanoTime();
+    List<KeyReconstructionData> batch =
+        provider.genReconstructionDataBatch(identifyingInfo, ephemeralKeys, caKeyPair.getPrivate());
+    long batchTime = System.nanoTime() - startTime;
+
+    assertTrue(batch.size() == batchSize);
+
+    for (int i = 0; i < batchSize; i++) {
+      KeyReconstructionData keyReconData = batch.get(i);
+      PublicKey reconstructedPublicKey = provider.reconstructPublicKey(identifyingInfo.get(i),
+          keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+      PrivateKey reconstructedPrivateKey = provider.reconstructPrivateKey(identifyingInfo.get(i),
+          keyReconData.getPublicKeyReconstructionData(),
+          keyReconData.getPrivateKeyReconstructionData(), devicePairs.get(i).getPrivate());
+
+      assertTrue(provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey));
+    }
+
+    System.out.println("Runtime of " + batchSize + " single issuances is: " + loopTime + "ns");
+    System.out.println("Runtime of batch issuance of " + batchSize + " is: " + batchTime + "ns");
+    System.out.println("Single to batch issuance time ratio: " + ((double) loopTime / batchTime));
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.CaKeyRegistry}
+   */
+  @Test
+  public void testCaKeyRegistry() throws Exception {
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    KeyReconstructionData keyReconData = provider.genReconstructionData(
+        tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+    PublicKey expectedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+
+    CaKeyRegistry registry = provider.getCaKeyRegistry();
+    PublicKey caKey = caKeyPair.getPublic();
+    assertTrue(registry.size() == 0 && !registry.isRegistered(caKey));
+
+    // an unregistered key is converted on every call
+    ECPoint caQ = ((BCECPublicKey) caKey).getQ();
+    assertTrue(registry.getPoint(caKey).equals(caQ));
+    assertTrue(registry.getPoint(caKey) != registry.getPoint(caKey));
+
+    // a registered key returns its cached, normalized point
+    ECPoint caPoint = registry.register(caKey);
+    assertTrue(caPoint.isNormalized() && caPoint.equals(caQ));
+    assertTrue(registry.register(caKey) == caPoint);
+    assertTrue(registry.getPoint(caKey) == caPoint);
+    assertTrue(registry.size() == 1 && registry.isRegistered(caKey));
+    assertTrue(expectedPublicKey.equals(provider.reconstructPublicKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(), caKey)));
+
+    // a key whose point is off the curve, or on another curve, is refused
+    // Bouncy Castle will not build such a key, so wrap a valid one whose point is replaced
+    final ECPoint offCurve = ecSpec.getCurve().createPoint(
+        caPoint.getAffineXCoord().toBigInteger(),
+        caPoint.getAffineYCoord().toBigInteger().add(BigInteger.ONE));
+    PublicKey offCurveKey = new BCECPublicKey("EC", (BCECPublicKey) caKey) {
+      @Override
+      public ECPoint getQ() {
+        return offCurve;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+        return this == o;
+      }
+
+      @Override
+      public int hashCode() {
+        return System.identityHashCode(this);
+      }
+    };
+    g.initialize(ECNamedCurveTable.getParameterSpec("secp384r1"), new SecureRandom());
+    PublicKey otherCurveKey = g.generateKeyPair().getPublic();
+
+    for (PublicKey invalidKey : new PublicKey[] {offCurveKey, otherCurveKey}) {
+      try {
+        registry.register(invalidKey);
+        assertTrue(false);
+      } catch (IllegalArgumentException ex) {
+        assertTrue(registry.size() == 1 && !registry.isRegistered(invalidKey));
+      }
+    }
+
+    assertTrue(registry.unregister(caKey) && !registry.unregister(caKey));
+    assertTrue(registry.size() == 0 && registry.getPoint(caKey) != caPoint);
+  }
+
+  /**
+   * Stress test sharing one {@link ca.trustpoint.m2m.ecqv.EcqvProvider} between threads. Every
+   * thread issues, reconstructs and verifies its own certificates; the throughput for each thread
+   * count is printed so scaling with core count can be compared.
+   */
+  @Test
+  public void testConcurrentReconstruction() throws Exception {
+    final int operationsPerThread = 200;
+    int cores = Runtime.getRuntime().availableProcessors();
+
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    final KeyPair caKeyPair = g.generateKeyPair();
+    final KeyPair devicePair = g.generateKeyPair();
+
+    final EcqvProvider provider =
+        new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+
+    for (int threads = 1; threads <= cores; threads *= 2) {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(threads);
+
+      long startTime = System.nanoTime();
+      for (int t = 0; t < threads; t++) {
+        final byte[] tbsCertificate = ("thread-" + t).getBytes("UTF8");
+
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            for (int i = 0; i < operationsPerThread; i++) {
+              KeyReconstructionData keyReconData = provider.genReconstructionData(
+                  tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+              PublicKey reconstructedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+                  keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+              PrivateKey reconstructedPrivateKey = provider.reconstructPrivateKey(tbsCertificate,
+                  keyReconData.getPublicKeyReconstructionData(),
+                  keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate());
+
+              if (!provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey)) {
+                return false;
+              }
+            }
+
+            return true;
+          }
+        }));
+      }
+
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+      long totalTime = System.nanoTime() - startTime;
+      executor.shutdown();
+
+      double throughput = (double) threads * operationsPerThread / (totalTime / 1e9);
+      System.out.println(threads + " thread(s): " + throughput + " certificates/s");
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.EcqvProvider#reconstructPublicKey} with a
+   * {@link ca.trustpoint.m2m.ecqv.ReconstructionCache}: hits, eviction, expiry and the keys of
+   * inputs whose concatenations are equal.
+   */
+  @Test
+  public void testReconstructionCache() throws Exception {
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[][] tbsCertificates = {{0x01}, {0x02}, {0x03}};
+    byte[][] reconstructionPoints = new byte[tbsCertificates.length][];
+    PublicKey[] expectedPublicKeys = new PublicKey[tbsCertificates.length];
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    for (int i = 0; i < tbsCertificates.length; i++) {
+      reconstructionPoints[i] = provider.genReconstructionData(tbsCertificates[i],
+          devicePair.getPublic(), caKeyPair.getPrivate()).getPublicKeyReconstructionData();
+      expectedPublicKeys[i] = provider.reconstructPublicKey(
+          tbsCertificates[i], reconstructionPoints[i], caKeyPair.getPublic());
+    }
+
+    // a hit returns the key recomputation gives, and is counted
+    ReconstructionCache cache = new ReconstructionCache(2, 0, TimeUnit.SECONDS);
+    provider.setReconstructionCache(cache);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(expectedPublicKeys[0].equals(provider.reconstructPublicKey(
+          tbsCertificates[0], reconstructionPoints[0], caKeyPair.getPublic())));
+    }
+    assertTrue(cache.size() == 1 && cache.getMissCount() == 1 && cache.getHitCount() == 2);
+
+    // the least recently used key is evicted when the cache is full
+    for (int i = 1; i < tbsCertificates.length; i++) {
+      assertTrue(expectedPublicKeys[i].equals(provider.reconstructPublicKey(
+          tbsCertificates[i], reconstructionPoints[i], caKeyPair.getPublic())));
+    }
+    assertTrue(cache.size() == 2 && cache.getMissCount() == 3);
+    assertTrue(expectedPublicKeys[0].equals(provider.reconstructPublicKey(
+        tbsCertificates[0], reconstructionPoints[0], caKeyPair.getPublic())));
+    assertTrue(cache.getMissCount() == 4 && cache.getHitCount() == 2);
+
+    // an expired key is reconstructed again
+    cache = new ReconstructionCache(2, 50, TimeUnit.MILLISECONDS);
+    provider.setReconstructionCache(cache);
+    provider.reconstructPublicKey(tbsCertificates[0], reconstructionPoints[0],
+        caKeyPair.getPublic());
+    provider.reconstructPublicKey(tbsCertificates[0], reconstructionPoints[0],
+        caKeyPair.getPublic());
+    assertTrue(cache.getMissCount() == 1 && cache.getHitCount() == 1);
+    Thread.sleep(100);
+    assertTrue(expectedPublicKeys[0].equals(provider.reconstructPublicKey(
+        tbsCertificates[0], reconstructionPoints[0], caKeyPair.getPublic())));
+    assertTrue(cache.getMissCount() == 2 && cache.getHitCount() == 1);
+
+    // moving bytes from the end of the reconstruction point to the end of the identifying
+    // information keeps their concatenation, but not the cache key
+    byte[] uncompressed =
+        ecSpec.getCurve().decodePoint(reconstructionPoints[0]).getEncoded(false);
+    byte[] shiftedCertificate = new byte[tbsCertificates[0].length + 32];
+    System.arraycopy(tbsCertificates[0], 0, shiftedCertificate, 0, tbsCertificates[0].length);
+    System.arraycopy(uncompressed, 0, shiftedCertificate, tbsCertificates[0].length, 32);
+    byte[] shiftedPoint = Arrays.copyOfRange(uncompressed, 32, uncompressed.length);
+
+    PublicKey expectedPublicKey = provider.reconstructPublicKey(
+        tbsCertificates[0], uncompressed, caKeyPair.getPublic());
+    try {
+      assertTrue(!expectedPublicKey.equals(provider.reconstructPublicKey(
+          shiftedCertificate, shiftedPoint, caKeyPair.getPublic())));
+    } catch (IOException ex) {
+      // the shifted bytes need not encode a point
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.EcqvProvider#verifyKeyPairs}
+   */
+  @Test
+  public void testVerifyKeyPairs() throws Exception {
+    int batchSize = 64;
+
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+
+    List<PublicKey> publicKeys = new ArrayList<PublicKey>(batchSize);
+    List<PrivateKey> privateKeys = new ArrayList<PrivateKey>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      KeyPair pair = g.generateKeyPair();
+      publicKeys.add(pair.getPublic());
+      privateKeys.add(pair.getPrivate());
+    }
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+
+    // no pairs, no results
+    assertTrue(provider.verifyKeyPairs(
+        new ArrayList<PublicKey>(), new ArrayList<PrivateKey>()).length == 0);
+
+    for (boolean verified : provider.verifyKeyPairs(publicKeys, privateKeys)) {
+      assertTrue(verified);
+    }
+
+    // break two pairs; only those must be reported
+    privateKeys.set(5, g.generateKeyPair().getPrivate());
+    privateKeys.set(40, g.generateKeyPair().getPrivate());
+
+    boolean[] verified = provider.verifyKeyPairs(publicKeys, privateKeys);
+    for (int i = 0; i < batchSize; i++) {
+      assertTrue(verified[i] == (i != 5 && i != 40));
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.MultiScalarMultiplier#sumOfMultiplies}
+   */
+  @Test
+  public void testMultiScalarMultiplier() throws Exception {
+    int threshold = MultiScalarMultiplier.PIPPENGER_THRESHOLD;
+    SecureRandom random = new SecureRandom();
+
+    // secp256r1 has no endomorphism; secp256k1 has one, so its sums are split
+    for (String curveName : new String[] {"secp256r1", "secp256k1"}) {
+      ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec(curveName);
+      BigInteger n = ecSpec.getN();
+
+      ECPoint[] points = new ECPoint[threshold];
+      BigInteger[] multipliers = new BigInteger[threshold];
+      for (int i = 0; i < threshold; i++) {
+        if (i % 7 == 3) {
+          // a point repeated from an earlier term
+          points[i] = points[i / 2];
+        } else {
+          points[i] = ecSpec.getG().multiply(
+              BigIntegers.createRandomInRange(BigInteger.ONE, n.subtract(BigInteger.ONE), random));
+        }
+
+        BigInteger k = BigIntegers.createRandomInRange(BigInteger.ZERO, n, random);
+        if (i == threshold - 1) {
+          multipliers[i] = n;
+        } else if (i % 5 == 1) {
+          multipliers[i] = BigInteger.ZERO;
+        } else if (i % 5 == 2) {
+          // at or above the order, by up to two multiples of it
+          multipliers[i] = k.add(n.multiply(BigInteger.valueOf(1 + i % 2)));
+        } else {
+          multipliers[i] = k;
+        }
+      }
+
+      // the terms of each count extend the terms of the one before, and so does the expected sum
+      ECPoint expected = ecSpec.getCurve().getInfinity();
+      int summed = 0;
+      for (int count : new int[] {1, 2, 3, threshold - 1, threshold}) {
+        for (; summed < count; summed++) {
+          expected = expected.add(
+              ECAlgorithms.referenceMultiply(points[summed], multipliers[summed]));
+        }
+
+        assertTrue(MultiScalarMultiplier.sumOfMultiplies(
+            Arrays.copyOf(points, count), Arrays.copyOf(multipliers, count)).equals(expected));
+      }
+
+      // only zero multipliers
+      BigInteger[] zeros = new BigInteger[threshold];
+      Arrays.fill(zeros, BigInteger.ZERO);
+      assertTrue(MultiScalarMultiplier.sumOfMultiplies(points, zeros).isInfinity());
+    }
+
+    try {
+      MultiScalarMultiplier.sumOfMultiplies(new ECPoint[0], new BigInteger[0]);
+      assertTrue(false);
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+
+  /**
+   * Prints the p50/p99 latency of {@link ca.trustpoint.m2m.ecqv.EcqvProvider#genReconstructionData}
+   * with and without an {@link ca.trustpoint.m2m.ecqv.EphemeralKeyPool}.
+   */
+  @Test
+  public void testEphemeralKeyPoolLatency() throws Exception {
+    int issuances = 1000;
+
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    long[] latencies = new long[issuances];
+
+    // warm up before timing
+    for (int i = 0; i < issuances; i++) {
+      provider.genReconstructionData(
+          tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+    }
+
+    for (int i = 0; i < issuances; i++) {
+      long startTime = System.nanoTime();
+      provider.genReconstructionData(
+          tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+      latencies[i] = System.nanoTime() - startTime;
+    }
+    Arrays.sort(latencies);
+    System.out.println("Without pool: p50 " + latencies[issuances / 2] + "ns, p99 "
+        + latencies[issuances * 99 / 100] + "ns");
+
+    EphemeralKeyPool pool =
+        new EphemeralKeyPool(SignatureAlgorithms.ECQV_SHA256_SECP256R1, issuances, 1);
+    try {
+      provider.setEphemeralKeyPool(pool);
+      while (pool.size() < issuances) {
+        Thread.sleep(10);
+      }
+
+      for (int i = 0; i < issuances; i++) {
+        long startTime = System.nanoTime();
+        KeyReconstructionData keyReconData = provider.genReconstructionData(
+            tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+        latencies[i] = System.nanoTime() - startTime;
+
+        PublicKey reconstructedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+            keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+        PrivateKey reconstructedPrivateKey = provider.reconstructPrivateKey(tbsCertificate,
+            keyReconData.getPublicKeyReconstructionData(),
+            keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate());
+        assertTrue(provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey));
+      }
+    } finally {
+      pool.close();
+    }
+    Arrays.sort(latencies);
+    System.out.println("With pool: p50 " + latencies[issuances / 2] + "ns, p99 "
+        + latencies[issuances * 99 / 100] + "ns");
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.EcqvProvider#reconstructPublicKey} with a
+   * {@link ca.trustpoint.m2m.ecqv.PointDecompressionCache}.
+   */
+  @Test
+  public void testPointDecompressionCache() throws Exception {
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    KeyReconstructionData keyReconData = provider.genReconstructionData(
+        tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+    PublicKey expectedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+
+    PointDecompressionCache cache = new PointDecompressionCache(16, 0, TimeUnit.SECONDS);
+    provider.setPointDecompressionCache(cache);
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(expectedPublicKey.equals(provider.reconstructPublicKey(tbsCertificate,
+          keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic())));
+    }
+    assertTrue(cache.getMissCount() == 1 && cache.getHitCount() == 2);
+
+    // a point off the curve is rejected
+    byte[] invalidPoint = keyReconData.getPublicKeyReconstructionData().clone();
+    invalidPoint[0] = 0x05;
+    try {
+      provider.reconstructPublicKey(tbsCertificate, invalidPoint, caKeyPair.getPublic());
+      assertTrue(false);
+    } catch (IOException ex) {
+      assertTrue(cache.size() == 1);
+    }
+
+    // in a cache shared by two curves, an encoding cached for one curve is a miss for the other,
+    // and is cached for each separately
+    ECParameterSpec otherSpec = ECNamedCurveTable.getParameterSpec("sect233k1");
+    ECCurve otherCurve = otherSpec.getCurve();
+    ECPoint otherPoint = otherSpec.getG();
+    byte[] encoded = keyReconData.getPublicKeyReconstructionData();
+    ECPoint point = ecSpec.getCurve().decodePoint(encoded);
+
+    cache = new PointDecompressionCache(16, 0, TimeUnit.SECONDS);
+    cache.put(encoded, point);
+    assertTrue(cache.get(otherCurve, encoded) == null);
+    assertTrue(cache.getMissCount() == 1 && cache.getHitCount() == 0);
+
+    cache.put(encoded, otherPoint);
+    assertTrue(cache.get(ecSpec.getCurve(), encoded) == point);
+    assertTrue(cache.get(otherCurve, encoded) == otherPoint);
+    assertTrue(cache.size() == 2 && cache.getMissCount() == 1 && cache.getHitCount() == 2);
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.EcqvProvider#setNonceSource}, with a
+   * {@link ca.trustpoint.m2m.ecqv.DeterministicNonceSource} and a seeded
+   * {@link ca.trustpoint.m2m.ecqv.DrbgNonceSource}.
+   */
+  @Test
+  public void testNonceSource() throws Exception {
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+    byte[] otherCertificate = {0x02};
+    byte[] seed = new byte[32];
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    provider.setNonceSource(new DeterministicNonceSource(DigestAlgorithms.SHA256));
+
+    // the same request gives the same reconstruction data, another request different data
+    KeyReconstructionData keyReconData = provider.genReconstructionData(
+        tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+    assertTrue(Arrays.equals(keyReconData.getPublicKeyReconstructionData(),
+        provider.genReconstructionData(tbsCertificate, devicePair.getPublic(),
+            caKeyPair.getPrivate()).getPublicKeyReconstructionData()));
+    assertTrue(!Arrays.equals(keyReconData.getPublicKeyReconstructionData(),
+        provider.genReconstructionData(otherCertificate, devicePair.getPublic(),
+            caKeyPair.getPrivate()).getPublicKeyReconstructionData()));
+
+    PublicKey reconstructedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+    PrivateKey reconstructedPrivateKey = provider.reconstructPrivateKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(),
+        keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate());
+    assertTrue(provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey));
+
+    // two sources with the same seed repeat each other for the same requests
+    provider.setNonceSource(new DrbgNonceSource(seed));
+    List<byte[]> points = new ArrayList<byte[]>();
+    for (int i = 0; i < 3; i++) {
+      points.add(provider.genReconstructionData(tbsCertificate, devicePair.getPublic(),
+          caKeyPair.getPrivate()).getPublicKeyReconstructionData());
+    }
+    assertTrue(!Arrays.equals(points.get(0), points.get(1)));
+
+    provider.setNonceSource(new DrbgNonceSource(seed));
+    for (int i = 0; i < 3; i++) {
+      assertTrue(Arrays.equals(points.get(i), provider.genReconstructionData(tbsCertificate,
+          devicePair.getPublic(), caKeyPair.getPrivate()).getPublicKeyReconstructionData()));
+    }
+
+    // but never share k between different requests: with the same Ru, the same k would give the
+    // same reconstruction point, and disclose the issuer's private key
+    provider.setNonceSource(new DrbgNonceSource(seed));
+    for (int i = 0; i < 3; i++) {
+      assertTrue(!Arrays.equals(points.get(i), provider.genReconstructionData(otherCertificate,
+          devicePair.getPublic(), caKeyPair.getPrivate()).getPublicKeyReconstructionData()));
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.EcqvProvider#setScalarMultiplicationMode}. Both
+   * modes issue keys that reconstruct and verify, and the issuance time of each is printed.
+   */
+  @Test
+  public void testScalarMultiplicationMode() throws Exception {
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+    int operations = 50;
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    assertTrue(provider.getScalarMultiplicationMode() == ScalarMultiplicationMode.FAST);
+
+    for (ScalarMultiplicationMode mode : ScalarMultiplicationMode.values()) {
+      provider.setScalarMultiplicationMode(mode);
+      List<PublicKey> publicKeys = new ArrayList<PublicKey>();
+      List<PrivateKey> privateKeys = new ArrayList<PrivateKey>();
+
+      long start = System.nanoTime();
+      for (int i = 0; i < operations; i++) {
+        KeyReconstructionData keyReconData = provider.genReconstructionData(
+            tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+        publicKeys.add(provider.reconstructPublicKey(tbsCertificate,
+            keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic()));
+        privateKeys.add(provider.reconstructPrivateKey(tbsCertificate,
+            keyReconData.getPublicKeyReconstructionData(),
+            keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate()));
+      }
+      System.out.println(mode + " issuance and reconstruction: "
+          + (System.nanoTime() - start) / operations + "ns");
+
+      // a mismatched pair is found in both modes
+      privateKeys.set(1, privateKeys.get(0));
+      boolean[] verified = provider.verifyKeyPairs(publicKeys, privateKeys);
+      for (int i = 0; i < operations; i++) {
+        assertTrue(verified[i] == (i != 1));
+      }
+    }
+
+    try {
+      provider.setScalarMultiplicationMode(null);
+      assertTrue(false);
+    } catch (IllegalArgumentException ex) {
+      assertTrue(provider.getScalarMultiplicationMode() == ScalarMultiplicationMode.CONSTANT_TIME);
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.KoblitzMultiplier}.
+   */
+  @Test
+  public void testKoblitzMultiplier() throws Exception {
+    assertTrue(EcqvContext.getInstance(SignatureAlgorithms.ECQV_SHA256_SECT233R1)
+        .getKoblitzMultiplier() == null);
+    assertTrue(EcqvContext.getInstance(SignatureAlgorithms.ECQV_SHA256_SECP256R1)
+        .getKoblitzMultiplier() == null);
+
+    EcqvContext context = EcqvContext.getInstance(SignatureAlgorithms.ECQV_SHA256_SECT233K1);
+    KoblitzMultiplier koblitz = context.getKoblitzMultiplier();
+    ECParameterSpec ecSpec = context.getCurveParameters();
+    ECPoint base = ecSpec.getG();
+    BigInteger n = ecSpec.getN();
+    SecureRandom random = new SecureRandom();
+    int operations = 50;
+
+    for (int i = 0; i < operations; i++) {
+      BigInteger a = new BigInteger(n.bitLength(), random);
+      BigInteger b = new BigInteger(n.bitLength(), random);
+      ECPoint p = base.multiply(new BigInteger(n.bitLength(), random));
+      ECPoint q = base.multiply(new BigInteger(n.bitLength(), random));
+
+      assertTrue(koblitz.multiply(p, a).equals(p.multiply(a)));
+      assertTrue(koblitz.multiplyGenerator(a).equals(base.multiply(a)));
+      assertTrue(koblitz.sumOfTwoMultiplies(p, a, q, b).equals(p.multiply(a).add(q.multiply(b))));
+      assertTrue(koblitz.sumOfTwoMultiplies(p, a, q, BigInteger.ONE).equals(p.multiply(a).add(q)));
+      assertTrue(koblitz.sumWithGeneratorMultiply(p, a, b)
+          .equals(p.multiply(a).add(base.multiply(b))));
+    }
+    assertTrue(koblitz.multiply(base, BigInteger.ZERO).isInfinity());
+    assertTrue(koblitz.multiplyGenerator(n).isInfinity());
+
+    try {
+      new KoblitzMultiplier(ECNamedCurveTable.getParameterSpec("sect233r1"));
+      assertTrue(false);
+    } catch (IllegalArgumentException ex) {
+      // only Koblitz curves are supported
+    }
+
+    // the provider issues, reconstructs and verifies on sect233k1 in both modes
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ECNamedCurveTable.getParameterSpec("sect233k1"), new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECT233K1, null);
+    for (ScalarMultiplicationMode mode : ScalarMultiplicationMode.values()) {
+      provider.setScalarMultiplicationMode(mode);
+      List<PublicKey> publicKeys = new ArrayList<PublicKey>();
+      List<PrivateKey> privateKeys = new ArrayList<PrivateKey>();
+
+      long start = System.nanoTime();
+      for (int i = 0; i < operations; i++) {
+        KeyReconstructionData keyReconData = provider.genReconstructionData(
+            tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+        PublicKey publicKey = provider.reconstructPublicKey(tbsCertificate,
+            keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+        PrivateKey privateKey = provider.reconstructPrivateKey(tbsCertificate,
+            keyReconData.getPublicKeyReconstructionData(),
+            keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate());
+        assertTrue(provider.verifyKeyPair(publicKey, privateKey));
+
+        publicKeys.add(publicKey);
+        privateKeys.add(privateKey);
+      }
+      System.out.println("sect233k1 " + mode + " issuance, reconstruction and verification: "
+          + (System.nanoTime() - start) / operations + "ns");
+
+      privateKeys.set(1, privateKeys.get(0));
+      boolean[] verified = provider.verifyKeyPairs(publicKeys, privateKeys);
+      for (int i = 0; i < operations; i++) {
+        assertTrue(verified[i] == (i != 1));
+      }
+    }
+
+    // a chain gives the same key as reconstructing each level
+    ImplicitCertificateChain chain = new ImplicitCertificateChain(
+        SignatureAlgorithms.ECQV_SHA256_SECT233K1, caKeyPair.getPublic());
+    PrivateKey issuerKey = caKeyPair.getPrivate();
+    PublicKey levelKey = caKeyPair.getPublic();
+    for (int level = 0; level < 3; level++) {
+      KeyPair requestPair = g.generateKeyPair();
+      KeyReconstructionData keyReconData = provider.genReconstructionData(
+          tbsCertificate, requestPair.getPublic(), issuerKey);
+      chain.add(tbsCertificate, keyReconData.getPublicKeyReconstructionData());
+      levelKey = provider.reconstructPublicKey(
+          tbsCertificate, keyReconData.getPublicKeyReconstructionData(), levelKey);
+      issuerKey = provider.reconstructPrivateKey(tbsCertificate,
+          keyReconData.getPublicKeyReconstructionData(),
+          keyReconData.getPrivateKeyReconstructionData(), requestPair.getPrivate());
+    }
+    assertTrue(provider.reconstructPublicKey(chain).equals(levelKey));
+    assertTrue(provider.verifyKeyPair(levelKey, issuerKey));
+
+    // the issuance check e*Pu + dCa*G through the generic multiplier and the tau-adic one
+    byte[] encoded = base.multiply(new BigInteger(n.bitLength(), random)).getEncoded(true);
+    BigInteger e = new BigInteger(n.bitLength() - 1, random);
+    BigInteger d = new BigInteger(n.bitLength() - 1, random);
+    long start = System.nanoTime();
+    for (int i = 0; i < operations; i++) {
+      MultiScalarMultiplier.sumOfTwoMultiplies(ecSpec.getCurve().decodePoint(encoded), e, base, d);
+    }
+    long generic = System.nanoTime() - start;
+    start = System.nanoTime();
+    for (int i = 0; i < operations; i++) {
+      koblitz.sumWithGeneratorMultiply(ecSpec.getCurve().decodePoint(encoded), e, d);
+    }
+    System.out.println("sect233k1 issuance check generic: " + generic / operations
+        + "ns, tau-adic: " + (System.nanoTime() - start) / operations + "ns");
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.CurveEndomorphisms}.
+   */
+  @Test
+  public void testCurveEndomorphisms() throws Exception {
+    // none of the ECQV curves has a GLV endomorphism
+    for (SignatureAlgorithms algorithm : SignatureAlgorithms.values()) {
+      if (algorithm.isEcqv()) {
+        assertTrue(EcqvContext.getInstance(algorithm).getEndomorphism() == null);
+      }
+    }
+
+    // secp256k1 without its endomorphism, and a plugin supplying it
+    ECParameterSpec glvSpec = ECNamedCurveTable.getParameterSpec("secp256k1");
+    final GLVEndomorphism glv = CurveEndomorphisms.getEndomorphism(glvSpec.getCurve());
+    assertTrue(glv != null);
+    assertTrue(CurveEndomorphisms.configure("secp256k1", glvSpec,
+        new ArrayList<EndomorphismPlugin>()) == glvSpec);
+
+    ECCurve plainCurve = glvSpec.getCurve().configure().setEndomorphism(null).create();
+    ECParameterSpec plainSpec = new ECParameterSpec(plainCurve,
+        plainCurve.importPoint(glvSpec.getG()), glvSpec.getN(), glvSpec.getH());
+    assertTrue(CurveEndomorphisms.getEndomorphism(plainCurve) == null);
+
+    EndomorphismPlugin plugin = new EndomorphismPlugin() {
+      @Override
+      public GLVEndomorphism getEndomorphism(String curveName, ECCurve curve) {
+        return glv;
+      }
+    };
+    List<EndomorphismPlugin> plugins = Arrays.asList(plugin);
+    ECParameterSpec configured = CurveEndomorphisms.configure("secp256k1", plainSpec, plugins);
+    assertTrue(CurveEndomorphisms.getEndomorphism(configured.getCurve()) == glv);
+
+    // the same sums with and without the endomorphism
+    SecureRandom random = new SecureRandom();
+    BigInteger n = plainSpec.getN();
+    int terms = MultiScalarMultiplier.PIPPENGER_THRESHOLD + 1;
+    ECPoint[] plainPoints = new ECPoint[terms];
+    ECPoint[] glvPoints = new ECPoint[terms];
+    BigInteger[] multipliers = new BigInteger[terms];
+    for (int i = 0; i < terms; i++) {
+      plainPoints[i] = plainSpec.getG().multiply(new BigInteger(n.bitLength(), random).mod(n));
+      glvPoints[i] = configured.getCurve().importPoint(plainPoints[i]);
+      multipliers[i] = new BigInteger(n.bitLength(), random).mod(n);
+    }
+    for (int count : new int[] {2, 3, terms}) {
+      ECPoint[] plainTerms = Arrays.copyOf(plainPoints, count);
+      ECPoint[] glvTerms = Arrays.copyOf(glvPoints, count);
+      BigInteger[] termMultipliers = Arrays.copyOf(multipliers, count);
+
+      assertTrue(MultiScalarMultiplier.sumOfMultiplies(glvTerms, termMultipliers).equals(
+          configured.getCurve().importPoint(
+              MultiScalarMultiplier.sumOfMultiplies(plainTerms, termMultipliers))));
+    }
+
+    int operations = 200;
+    long start = System.nanoTime();
+    for (int i = 0; i < operations; i++) {
+      MultiScalarMultiplier.sumOfTwoMultiplies(
+          plainPoints[i], multipliers[i], plainPoints[i + 1], BigInteger.ONE);
+    }
+    long plain = System.nanoTime() - start;
+    start = System.nanoTime();
+    for (int i = 0; i < operations; i++) {
+      MultiScalarMultiplier.sumOfTwoMultiplies(
+          glvPoints[i], multipliers[i], glvPoints[i + 1], BigInteger.ONE);
+    }
+    System.out.println("secp256k1 e*Pu + Qca without endomorphism: " + plain / operations
+        + "ns, with: " + (System.nanoTime() - start) / operations + "ns");
+
+    // an endomorphism that does not hold on the curve, or a plugin that throws, is skipped
+    ECParameterSpec p256Spec = ECNamedCurveTable.getParameterSpec("secp256r1");
+    assertTrue(CurveEndomorphisms.configure("secp256r1", p256Spec, plugins) == p256Spec);
+
+    EndomorphismPlugin failingPlugin = new EndomorphismPlugin() {
+      @Override
+      public GLVEndomorphism getEndomorphism(String curveName, ECCurve curve) {
+        throw new IllegalStateException("plugin failure");
+      }
+    };
+    configured = CurveEndomorphisms.configure(
+        "secp256k1", plainSpec, Arrays.asList(failingPlugin, plugin));
+    assertTrue(CurveEndomorphisms.getEndomorphism(configured.getCurve()) == glv);
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.MappedCaKeyStore}.
+   */
+  @Test
+  public void testMappedCaKeyStore() throws Exception {
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ECNamedCurveTable.getParameterSpec("prime256v1"), new SecureRandom());
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+    int caCount = 1000;
+
+    List<KeyPair> caKeyPairs = new ArrayList<KeyPair>();
+    List<PublicKey> caKeys = new ArrayList<PublicKey>();
+    for (int i = 0; i < caCount; i++) {
+      caKeyPairs.add(g.generateKeyPair());
+      caKeys.add(caKeyPairs.get(i).getPublic());
+    }
+    caKeys.add(caKeys.get(0));
+
+    Path directory = Files.createTempDirectory("ecqv-ca-keys");
+    Path file = directory.resolve("ca-keys.bin");
+    long start = System.nanoTime();
+    MappedCaKeyStore built =
+        MappedCaKeyStore.build(file, CryptoAlgorithms.CURVE_SECP256R1, caKeys);
+    System.out.println("CA key store build: " + (System.nanoTime() - start) / caCount
+        + "ns per key");
+    assertTrue(built.size() == caCount);
+
+    // a restarted node opens the same file
+    start = System.nanoTime();
+    MappedCaKeyStore store = MappedCaKeyStore.open(file, CryptoAlgorithms.CURVE_SECP256R1);
+    System.out.println("CA key store open: " + (System.nanoTime() - start) + "ns");
+    assertTrue(store.size() == caCount);
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    try {
+      provider.reconstructPublicKey(tbsCertificate, new byte[0], new byte[20]);
+      assertTrue(false);
+    } catch (IllegalStateException ex) {
+      // no store set
+    }
+    provider.setCaKeyStore(store);
+    assertTrue(provider.getCaKeyStore() == store);
+
+    for (int i = 0; i < caCount; i += 97) {
+      KeyPair caKeyPair = caKeyPairs.get(i);
+      byte[] keyId = MappedCaKeyStore.keyIdentifier(caKeyPair.getPublic());
+      assertTrue(store.contains(keyId));
+
+      KeyReconstructionData keyReconData = provider.genReconstructionData(
+          tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+      PublicKey publicKey = provider.reconstructPublicKey(
+          tbsCertificate, keyReconData.getPublicKeyReconstructionData(), keyId);
+      assertTrue(publicKey.equals(provider.reconstructPublicKey(tbsCertificate,
+          keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic())));
+      assertTrue(provider.verifyKeyPair(publicKey, provider.reconstructPrivateKey(tbsCertificate,
+          keyReconData.getPublicKeyReconstructionData(),
+          keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate())));
+    }
+
+    // lookups of every key, from the mapping
+    int operations = 10000;
+    byte[][] keyIds = new byte[caCount][];
+    for (int i = 0; i < caCount; i++) {
+      keyIds[i] = MappedCaKeyStore.keyIdentifier(caKeys.get(i));
+    }
+    ECCurve curve = provider.getCurveParameters().getCurve();
+    for (int i = 0; i < caCount; i++) {
+      assertTrue(store.getPoint(curve, keyIds[i])
+          .equals(provider.getCaKeyRegistry().getPoint(caKeys.get(i))));
+    }
+    start = System.nanoTime();
+    for (int i = 0; i < operations; i++) {
+      store.getPoint(curve, keyIds[i % caCount]);
+    }
+    System.out.println("CA key store lookup: " + (System.nanoTime() - start) / operations + "ns");
+
+    try {
+      provider.reconstructPublicKey(tbsCertificate,
+          provider.genReconstructionData(tbsCertificate, devicePair.getPublic(),
+              caKeyPairs.get(0).getPrivate()).getPublicKeyReconstructionData(),
+          MappedCaKeyStore.keyIdentifier(devicePair.getPublic()));
+      assertTrue(false);
+    } catch (IOException ex) {
+      // not a stored CA key
+    }
+
+    try {
+      MappedCaKeyStore.open(file, CryptoAlgorithms.CURVE_SECP384R1);
+      assertTrue(false);
+    } catch (IllegalArgumentException ex) {
+      // stored for another curve
+    }
+
+    try {
+      new EcqvProvider(SignatureAlgorithms.ECQV_SHA384_SECP384R1, null).setCaKeyStore(store);
+      assertTrue(false);
+    } catch (IllegalArgumentException ex) {
+      // provider for another curve
+    }
+
+    // a corrupted or truncated file fails its checksum
+    byte[] content = Files.readAllBytes(file);
+    Path damaged = directory.resolve("damaged.bin");
+    content[100] ^= 1;
+    Files.write(damaged, content);
+    try {
+      MappedCaKeyStore.open(damaged, CryptoAlgorithms.CURVE_SECP256R1);
+      assertTrue(false);
+    } catch (IOException ex) {
+      // checksum mismatch
+    }
+    content[100] ^= 1;
+    Files.write(damaged, Arrays.copyOf(content, content.length - 1));
+    try {
+      MappedCaKeyStore.open(damaged, CryptoAlgorithms.CURVE_SECP256R1);
+      assertTrue(false);
+    } catch (IOException ex) {
+      // truncated
+    }
+
+    // a point off the curve is rejected when looked up, even with a matching checksum
+    int header = content.length - 32 - caCount * (20 + 2 * 32);
+    byte[] firstKeyId = Arrays.copyOfRange(content, header, header + 20);
+    content[header + 20 + 2 * 32 - 1] ^= 1;
+    MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+    sha256.update(content, 0, content.length - 32);
+    System.arraycopy(sha256.digest(), 0, content, content.length - 32, 32);
+    Files.write(damaged, content);
+    MappedCaKeyStore tampered = MappedCaKeyStore.open(damaged, CryptoAlgorithms.CURVE_SECP256R1);
+    assertTrue(tampered.contains(firstKeyId));
+    try {
+      tampered.getPoint(curve, firstKeyId);
+      assertTrue(false);
+    } catch (IOException ex) {
+      // not a valid point
+    }
+
+    // concurrent builds of the same store each write their own temporary file
+    final List<PublicKey> someCaKeys = caKeys.subList(0, 10);
+    final Path rebuilt = file;
+    List<CompletableFuture<MappedCaKeyStore>> builds =
+        new ArrayList<CompletableFuture<MappedCaKeyStore>>();
+    for (int i = 0; i < 4; i++) {
+      builds.add(CompletableFuture.supplyAsync(new Supplier<MappedCaKeyStore>() {
+        @Override
+        public MappedCaKeyStore get() {
+          try {
+            return MappedCaKeyStore.build(rebuilt, CryptoAlgorithms.CURVE_SECP256R1, someCaKeys);
+          } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+          }
+        }
+      }));
+    }
+    for (CompletableFuture<MappedCaKeyStore> build : builds) {
+      assertTrue(build.get().size() == 10);
+    }
+    assertTrue(MappedCaKeyStore.open(file, CryptoAlgorithms.CURVE_SECP256R1).size() == 10);
+    try (Stream<Path> files = Files.list(directory)) {
+      assertTrue(files.count() == 2);
+    }
+
+    Files.delete(damaged);
+    Files.delete(file);
+    Files.delete(directory);
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.EcqvProvider#reconstructKeyPair}.
+   */
+  @Test
+  public void testReconstructKeyPair() throws Exception {
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    KeyReconstructionData keyReconData = provider.genReconstructionData(
+        tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+
+    long start = System.nanoTime();
+    PublicKey reconstructedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+    PrivateKey reconstructedPrivateKey = provider.reconstructPrivateKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(),
+        keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate());
+    assertTrue(provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey));
+    System.out.println("Separate reconstruction: " + (System.nanoTime() - start) + "ns");
+
+    start = System.nanoTime();
+    KeyPair reconstructedPair = provider.reconstructKeyPair(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(),
+        keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate(),
+        caKeyPair.getPublic());
+    System.out.println("Key pair reconstruction: " + (System.nanoTime() - start) + "ns");
+
+    assertTrue(reconstructedPair.getPublic().equals(reconstructedPublicKey));
+    assertTrue(reconstructedPair.getPrivate().equals(reconstructedPrivateKey));
+
+    // the wrong ephemeral key yields a private key that does not match the certificate
+    try {
+      provider.reconstructKeyPair(tbsCertificate, keyReconData.getPublicKeyReconstructionData(),
+          keyReconData.getPrivateKeyReconstructionData(), caKeyPair.getPrivate(),
+          caKeyPair.getPublic());
+      assertTrue(false);
+    } catch (IOException ex) {
+      // expected
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.ChainVerifier}. Chains of three levels on two
+   * curves are reconstructed in parallel and compared with level-by-level reconstruction.
+   */
+  @Test
+  public void testChainVerifier() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    ChainVerifier verifier = new ChainVerifier(pool);
+    List<ImplicitCertificateChain> chains = new ArrayList<ImplicitCertificateChain>();
+    List<PublicKey> leafKeys = new ArrayList<PublicKey>();
+    SignatureAlgorithms[] algorithms = {
+        SignatureAlgorithms.ECQV_SHA256_SECP256R1, SignatureAlgorithms.ECQV_SHA384_SECP384R1};
+
+    for (SignatureAlgorithms algorithm : algorithms) {
+      KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+      g.initialize(ECNamedCurveTable.getParameterSpec(
+          algorithm.getCryptoAlgorithm().getAlgorithmName()), new SecureRandom());
+      EcqvProvider provider = verifier.getProvider(algorithm);
+
+      for (int c = 0; c < 4; c++) {
+        KeyPair caKeyPair = g.generateKeyPair();
+        ImplicitCertificateChain chain =
+            new ImplicitCertificateChain(algorithm, caKeyPair.getPublic());
+        PublicKey issuerPublicKey = caKeyPair.getPublic();
+        PrivateKey issuerPrivateKey = caKeyPair.getPrivate();
+
+        // each level is issued by the key reconstructed at the level above
+        for (int level = 0; level < 3; level++) {
+          byte[] identifyingInfo = ("chain " + c + " level " + level).getBytes("UTF8");
+          KeyPair requestPair = g.generateKeyPair();
+          KeyReconstructionData keyReconData = provider.genReconstructionData(
+              identifyingInfo, requestPair.getPublic(), issuerPrivateKey);
+          chain.add(identifyingInfo, keyReconData.getPublicKeyReconstructionData());
+
+          issuerPublicKey = provider.reconstructPublicKey(identifyingInfo,
+              keyReconData.getPublicKeyReconstructionData(), issuerPublicKey);
+          issuerPrivateKey = provider.reconstructPrivateKey(identifyingInfo,
+              keyReconData.getPublicKeyReconstructionData(),
+              keyReconData.getPrivateKeyReconstructionData(), requestPair.getPrivate());
+        }
+        assertTrue(provider.verifyKeyPair(issuerPublicKey, issuerPrivateKey));
+
+        chains.add(chain);
+        leafKeys.add(issuerPublicKey);
+      }
+    }
+
+    // a chain with a point off the curve fails on its own
+    ImplicitCertificateChain first = chains.get(0);
+    byte[] invalidPoint = first.getReconstructionPoint(1).clone();
+    invalidPoint[0] = 0x05;
+    chains.add(new ImplicitCertificateChain(first.getAlgorithm(), first.getRootKey())
+        .add(first.getIdentifyingInfo(0), first.getReconstructionPoint(0))
+        .add(first.getIdentifyingInfo(1), invalidPoint));
+
+    long start = System.nanoTime();
+    PublicKey[] reconstructed = verifier.reconstructPublicKeys(chains);
+    System.out.println("Chain reconstruction: "
+        + (System.nanoTime() - start) / chains.size() + " ns per chain");
+
+    for (int i = 0; i < leafKeys.size(); i++) {
+      assertTrue(reconstructed[i].equals(leafKeys.get(i)));
+    }
+    assertTrue(reconstructed[leafKeys.size()] == null);
+    assertTrue(verifier.reconstructPublicKey(first).equals(leafKeys.get(0)));
+
+    pool.shutdown();
+  }
+
+  /**
+   * Test method for the lookups of {@link ca.trustpoint.m2m.SignatureAlgorithms},
+   * {@link ca.trustpoint.m2m.ecqv.CryptoAlgorithms} and
+   * {@link ca.trustpoint.m2m.ecqv.DigestAlgorithms}.
+   */
+  @Test
+  public void testAlgorithmLookup() throws Exception {
+    for (SignatureAlgorithms algorithm : SignatureAlgorithms.values()) {
+      assertTrue(SignatureAlgorithms.getInstance(algorithm.getM2mOid()) == algorithm);
+      assertTrue(SignatureAlgorithms.getInstance(algorithm.getNfcOid()) == algorithm);
+      assertTrue(SignatureAlgorithms.getInstance(algorithm.getM2mOid().getOid()) == algorithm);
+      assertTrue(SignatureAlgorithms.getInstance(algorithm.getNfcOid().getOid()) == algorithm);
+      assertTrue(SignatureAlgorithms.getInstance(
+          new ASN1ObjectIdentifier(algorithm.getM2mOid().getOid()).getEncoded()) == algorithm);
+      assertTrue(CryptoAlgorithms.getInstance(
+          algorithm.getCryptoAlgorithm().getAlgorithmName()) == algorithm.getCryptoAlgorithm());
+      assertTrue(DigestAlgorithms.getInstance(
+          algorithm.getDigestAlgorithm().getDigestName()) == algorithm.getDigestAlgorithm());
+
+      if (algorithm.isEcqv()) {
+        assertTrue(SignatureAlgorithms.getInstance(algorithm.getSecOid(), true) == algorithm);
+      }
+    }
+
+    // secp192r1 is looked up by its SEC OID, like the other curves
+    assertTrue(SignatureAlgorithms.getInstance(SECObjectIdentifiers.secp192r1.getId(), true)
+        == SignatureAlgorithms.ECQV_SHA256_SECP192R1);
+    assertTrue(SignatureAlgorithms.getInstance(SECObjectIdentifiers.secp256r1.getId(), false)
+        == SignatureAlgorithms.ECDSA_SHA256_SECP256R1);
+
+    try {
+      SignatureAlgorithms.getInstance("1.2.3");
+      assertTrue(false);
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.EcqvContext}. Providers of one algorithm share
+   * its context, and an {@link ca.trustpoint.m2m.ecqv.ImplicitCertificateGenerator} interoperates
+   * with an {@link ca.trustpoint.m2m.ecqv.EcqvProvider}.
+   */
+  @Test
+  public void testEcqvContext() throws Exception {
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+
+    EcqvContext context = EcqvContext.getInstance(SignatureAlgorithms.ECQV_SHA256_SECP256R1);
+    assertTrue(context.getAlgorithm() == SignatureAlgorithms.ECQV_SHA256_SECP256R1);
+    assertTrue(context.getGeneratorTable()
+        == GeneratorTable.getInstance(SignatureAlgorithms.ECQV_SHA256_SECP256R1));
+    try {
+      EcqvContext.getInstance(SignatureAlgorithms.ECDSA_SHA256_SECP256R1);
+      assertTrue(false);
+    } catch (UnsupportedOperationException ex) {
+      // expected
+    }
+
+    ImplicitCertificateGenerator generator = new ImplicitCertificateGenerator(
+        SignatureAlgorithms.ECQV_SHA256_SECP256R1.getM2mOid().getOid(), null);
+    KeyReconstructionData keyReconData = generator.genReconstructionData(
+        tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+
+    long start = System.nanoTime();
+    EcqvProvider provider = null;
+    for (int i = 0; i < 1000; i++) {
+      provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    }
+    System.out.println(
+        "EcqvProvider construction: " + (System.nanoTime() - start) / 1000 + " ns per instance");
+
+    PublicKey reconstructedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+    PrivateKey reconstructedPrivateKey = provider.reconstructPrivateKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(),
+        keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate());
+    assertTrue(generator.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey));
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.AsyncEcqvService}. The executor is held busy
+   * while requests are submitted, so they stay pending and can be coalesced or rejected.
+   */
+  @Test
+  public void testAsyncEcqvService() throws Exception {
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    KeyReconstructionData keyReconData = provider.genReconstructionData(
+        tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+    PublicKey expectedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+        keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    final CountDownLatch busy = new CountDownLatch(1);
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            busy.await();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+
+      AsyncEcqvService service = new AsyncEcqvService(provider, executor, 2);
+
+      List<CompletableFuture<PublicKey>> reconstructions =
+          new ArrayList<CompletableFuture<PublicKey>>();
+      for (int i = 0; i < 5; i++) {
+        reconstructions.add(service.reconstructPublicKey(tbsCertificate,
+            keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic(), 10,
+            TimeUnit.SECONDS));
+      }
+      CompletableFuture<KeyReconstructionData> issuance = service.genReconstructionData(
+          tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate(), 10, TimeUnit.SECONDS);
+      CompletableFuture<KeyReconstructionData> rejected = service.genReconstructionData(
+          tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate(), 10, TimeUnit.SECONDS);
+
+      assertTrue(service.getCoalescedCount() == 4);
+      assertTrue(service.getPendingCount() == 2);
+      assertTrue(rejected.isCompletedExceptionally());
+
+      busy.countDown();
+
+      for (CompletableFuture<PublicKey> reconstruction : reconstructions) {
+        assertTrue(expectedPublicKey.equals(reconstruction.get()));
+      }
+
+      KeyReconstructionData issued = issuance.get();
+      PublicKey reconstructedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+          issued.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+      PrivateKey reconstructedPrivateKey = provider.reconstructPrivateKey(tbsCertificate,
+          issued.getPublicKeyReconstructionData(), issued.getPrivateKeyReconstructionData(),
+          devicePair.getPrivate());
+      assertTrue(provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey));
+    } finally {
+      busy.countDown();
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.EcqvProvider#setMetricsListener}. Prints the
+   * median latency of each issuance stage.
+   */
+  @Test
+  public void testMetricsListener() throws Exception {
+    int operations = 50;
+
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    EcqvMetrics metrics = new EcqvMetrics();
+    provider.setMetricsListener(metrics);
+
+    for (int i = 0; i < operations; i++) {
+      KeyReconstructionData keyReconData = provider.genReconstructionData(
+          tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate());
+      PublicKey reconstructedPublicKey = provider.reconstructPublicKey(tbsCertificate,
+          keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+      PrivateKey reconstructedPrivateKey = provider.reconstructPrivateKey(tbsCertificate,
+          keyReconData.getPublicKeyReconstructionData(),
+          keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate());
+      assertTrue(provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey));
+      provider.reconstructKeyPair(tbsCertificate, keyReconData.getPublicKeyReconstructionData(),
+          keyReconData.getPrivateKeyReconstructionData(), devicePair.getPrivate(),
+          caKeyPair.getPublic());
+    }
+
+    for (EcqvOperation operation : EcqvOperation.values()) {
+      LatencyHistogram histogram =
+          metrics.getOperationHistogram(SignatureAlgorithms.ECQV_SHA256_SECP256R1, operation);
+      assertTrue(histogram.getCount() == operations);
+      assertTrue(histogram.getValueAtPercentile(50) <= histogram.getMax());
+    }
+
+    for (EcqvStage stage : EcqvStage.values()) {
+      LatencyHistogram histogram = metrics.getStageHistogram(
+          SignatureAlgorithms.ECQV_SHA256_SECP256R1, EcqvOperation.ISSUANCE, stage);
+      System.out.println("Issuance " + stage + ": p50 " + histogram.getValueAtPercentile(50)
+          + "ns over " + histogram.getCount());
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.ScalarField#multiplyAdd}, against
+   * {@link java.math.BigInteger BigInteger} on the order of every ECQV curve.
+   */
+  @Test
+  public void testScalarField() throws Exception {
+    SecureRandom random = new SecureRandom();
+
+    for (SignatureAlgorithms algorithm : SignatureAlgorithms.values()) {
+      if (!algorithm.isEcqv()) {
+        continue;
+      }
+
+      BigInteger n = GeneratorTable.getInstance(algorithm).getCurveParameters().getN();
+      ScalarField scalarField = new ScalarField(n);
+      int[] a = scalarField.newElement();
+      int[] b = scalarField.newElement();
+      int[] c = scalarField.newElement();
+      byte[] os = new byte[scalarField.getByteLength()];
+
+      for (int i = 0; i < 1000; i++) {
+        BigInteger x = new BigInteger(n.bitLength() + 8, random).mod(n);
+        BigInteger y =
+            (i == 0) ? n.subtract(BigInteger.ONE) : new BigInteger(n.bitLength(), random);
+        BigInteger z = new BigInteger(n.bitLength(), random).mod(n);
+
+        scalarField.fromBigInteger(x, a);
+        scalarField.fromBigInteger(y, b);
+        scalarField.fromBigInteger(z, c);
+        scalarField.multiplyAdd(a, b, c, c);
+        scalarField.toOctetString(c, os, 0);
+
+        assertTrue(new BigInteger(1, os).equals(x.multiply(y).add(z).mod(n)));
+        assertTrue(scalarField.fromOctetString(os, a));
+      }
+
+      // n itself is not a valid element
+      assertTrue(!scalarField.fromOctetString(BigIntegers.asUnsignedByteArray(os.length, n), a));
+    }
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.BulkIssuancePipeline#run}. The manifest is grown
+   * between two runs, so the second run resumes from the checkpoint of the first.
+   */
+  @Test
+  public void testBulkIssuancePipeline() throws Exception {
+    int deviceCount = 150;
+    int firstRunCount = 100;
+
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+
+    List<byte[]> identifyingInfo = new ArrayList<byte[]>(deviceCount);
+    List<KeyPair> devicePairs = new ArrayList<KeyPair>(deviceCount);
+    for (int i = 0; i < deviceCount; i++) {
+      identifyingInfo.add(("device-" + i).getBytes("UTF8"));
+      devicePairs.add(g.generateKeyPair());
+    }
+
+    Path directory = Files.createTempDirectory("ecqv-pipeline");
+    Path manifest = directory.resolve("manifest.bin");
+    Path output = directory.resolve("output.bin");
+    Path checkpoint = directory.resolve("checkpoint.bin");
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+
+    // small chunks, so each run hands several chunks to the workers
+    BulkIssuancePipeline pipeline =
+        new BulkIssuancePipeline(provider, caKeyPair.getPrivate(), 2, 1024);
+
+    appendManifest(manifest, identifyingInfo, devicePairs, 0, firstRunCount);
+    assertTrue(pipeline.run(manifest, output, checkpoint) == firstRunCount);
+
+    appendManifest(manifest, identifyingInfo, devicePairs, firstRunCount, deviceCount);
+    assertTrue(pipeline.run(manifest, output, checkpoint) == deviceCount);
+
+    FileChannel channel = FileChannel.open(output, StandardOpenOption.READ);
+    try {
+      KeyReconstructionRecords records =
+          new KeyReconstructionRecords(CryptoAlgorithms.CURVE_SECP256R1,
+              channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      assertTrue(records.size() == deviceCount);
+
+      KeyReconstructionDataView view = new KeyReconstructionDataView();
+      for (int i = 0; i < deviceCount; i++) {
+        KeyReconstructionData keyReconData = records.get(i, view).toKeyReconstructionData();
+        assertTrue(view.getCurve() == CryptoAlgorithms.CURVE_SECP256R1);
+
+        PublicKey reconstructedPublicKey = provider.reconstructPublicKey(identifyingInfo.get(i),
+            keyReconData.getPublicKeyReconstructionData(), caKeyPair.getPublic());
+        PrivateKey reconstructedPrivateKey = provider.reconstructPrivateKey(identifyingInfo.get(i),
+            keyReconData.getPublicKeyReconstructionData(),
+            keyReconData.getPrivateKeyReconstructionData(), devicePairs.get(i).getPrivate());
+        assertTrue(provider.verifyKeyPair(reconstructedPublicKey, reconstructedPrivateKey));
+      }
+    } finally {
+      channel.close();
+    }
+
+    // resuming against another manifest, or with another algorithm, is rejected
+    Path otherManifest = directory.resolve("other-manifest.bin");
+    appendManifest(otherManifest, identifyingInfo, devicePairs, 1, deviceCount);
+    try {
+      pipeline.run(otherManifest, output, checkpoint);
+      assertTrue(false);
+    } catch (IOException ex) {
+      // expected
+    }
+
+    BulkIssuancePipeline otherPipeline = new BulkIssuancePipeline(
+        new EcqvProvider(SignatureAlgorithms.ECQV_SHA384_SECP384R1, null),
+        caKeyPair.getPrivate(), 2, 1024);
+    try {
+      otherPipeline.run(manifest, output, checkpoint);
+      assertTrue(false);
+    } catch (IOException ex) {
+      // expected
+    }
+    assertTrue(pipeline.run(manifest, output, checkpoint) == deviceCount);
+
+    Files.delete(otherManifest);
+    Files.delete(manifest);
+    Files.delete(output);
+    Files.delete(checkpoint);
+    Files.delete(directory);
+  }
+
+  /**
+   * Test method for {@link ca.trustpoint.m2m.ecqv.KeyReconstructionRecords}: the stable curve ids,
+   * and private key reconstruction from the buffers of a
+   * {@link ca.trustpoint.m2m.ecqv.KeyReconstructionDataView}.
+   */
+  @Test
+  public void testKeyReconstructionRecords() throws Exception {
+    int count = 3;
+
+    ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("prime256v1");
+    KeyPairGenerator g = KeyPairGenerator.getInstance("ECDSA", "BC");
+    g.initialize(ecSpec, new SecureRandom());
+    KeyPair caKeyPair = g.generateKeyPair();
+    KeyPair devicePair = g.generateKeyPair();
+    byte[] tbsCertificate = {0x01};
+
+    EcqvProvider provider = new EcqvProvider(SignatureAlgorithms.ECQV_SHA256_SECP256R1, null);
+    KeyReconstructionRecords records =
+        KeyReconstructionRecords.allocate(CryptoAlgorithms.CURVE_SECP256R1, count);
+    List<KeyReconstructionData> data = new ArrayList<KeyReconstructionData>(count);
+    for (int i = 0; i < count; i++) {
+      data.add(provider.genReconstructionData(
+          tbsCertificate, devicePair.getPublic(), caKeyPair.getPrivate()));
+      records.put(i, data.get(i));
+    }
+
+    // the curve id is fixed by the format, whatever the order of CryptoAlgorithms
+    ByteBuffer buffer = records.getBuffer();
+    assertTrue(buffer.get(0) == 4);
+
+    ByteBuffer identifyingInfo = ByteBuffer.wrap(tbsCertificate);
+    KeyReconstructionDataView view = new KeyReconstructionDataView();
+    for (int i = 0; i < count; i++) {
+      records.get(i, view);
+      assertTrue(view.getCurve() == CryptoAlgorithms.CURVE_SECP256R1);
+
+      ByteBuffer reconstructionPoint = view.getPublicKeyReconstructionData();
+      ByteBuffer privateKeyData = view.getPrivateKeyReconstructionData();
+      int pointPosition = reconstructionPoint.position();
+      int privateKeyDataPosition = privateKeyData.position();
+
+      PrivateKey expectedPrivateKey = provider.reconstructPrivateKey(tbsCertificate,
+          data.get(i).getPublicKeyReconstructionData(),
+          data.get(i).getPrivateKeyReconstructionData(), devicePair.getPrivate());
+      assertTrue(expectedPrivateKey.equals(provider.reconstructPrivateKey(identifyingInfo,
+          reconstructionPoint, privateKeyData, devicePair.getPrivate())));
+      assertTrue(reconstructionPoint.position() == pointPosition
+          && privateKeyData.position() == privateKeyDataPosition);
+    }
+
+    // an unknown curve id is rejected
+    buffer.put(0, (byte) 0x7F);
+    try {
+      records.get(0, view).getCurve();
+      assertTrue(false);
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+
+  /**
+   * Append the devices in [from, to) to a manifest in the format read by
+   * {@link ca.trustpoint.m2m.ecqv.BulkIssuancePipeline}.
+   */
+  private static void appendManifest(Path manifest, List<byte[]> identifyingInfo,
+      List<KeyPair> devicePairs, int from, int to) throws Exception {
+    DataOutputStream out = new DataOutputStream(Files.newOutputStream(
+        manifest, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    try {
+      for (int i = from; i < to; i++) {
+        byte[] ephemeralPoint =
+            ((BCECPublicKey) devicePairs.get(i).getPublic()).getQ().getEncoded(true);
+
+        out.writeShort(identifyingInfo.get(i).length);
+        out.write(identifyingInfo.get(i));
+        out.writeByte(ephemeralPoint.length);
+        out.write(ephemeralPoint);
+      }
+    } finally {
+      out.close();
+    }
+  }
 }
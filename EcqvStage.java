@@ -0,0 +1,30 @@
+/**
+ * Enumerates the stages of the Elliptic Curve Qu-Vanstone (ECQV) operations reported to an
+ * {@link EcqvMetricsListener}.
+ */
+public enum EcqvStage {
+  /**
+   * Taking or generating the CA ephemeral key pair (k, kG).
+   */
+  EPHEMERAL_KEY_GENERATION,
+  /**
+   * Decoding the reconstruction point and looking up the CA public point.
+   */
+  DECODING,
+  /**
+   * Hashing the implicit certificate and computing e from H(Certu).
+   */
+  HASHING,
+  /**
+   * Point additions and scalar multiplications.
+   */
+  POINT_MULTIPLICATION,
+  /**
+   * Scalar arithmetic modulo the curve order.
+   */
+  SCALAR_ARITHMETIC,
+  /**
+   * Encoding points and building keys.
+   */
+  ENCODING
+}
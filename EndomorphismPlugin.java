@@ -0,0 +1,25 @@
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.endo.GLVEndomorphism;
+
+/**
+ * Supplies the GLV endomorphism of curves that Bouncy Castle builds without one, so that the
+ * point multiplications of the Elliptic Curve Qu-Vanstone (ECQV) operations on those curves split
+ * their scalars in two (see {@link CurveEndomorphisms}).
+ *
+ * <p>Plugins are found with {@link java.util.ServiceLoader}: an implementation, with a public
+ * no-argument constructor, is registered by naming it in a
+ * {@code META-INF/services/EndomorphismPlugin} resource on the class path. Plugins are asked once
+ * per curve, when the curves of the ECQV signature algorithms are first built, and every
+ * endomorphism they return is checked against the base point before it is used.
+ */
+public interface EndomorphismPlugin {
+  /**
+   * Returns the endomorphism of a curve.
+   *
+   * @param curveName Algorithm name of the curve, as in {@link CryptoAlgorithms}.
+   * @param curve The curve, as built by Bouncy Castle.
+   *
+   * @return The endomorphism, or null if this plugin has none for the curve.
+   */
+  GLVEndomorphism getEndomorphism(String curveName, ECCurve curve);
+}
@@ -0,0 +1,90 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.BigIntegers;
+
+/**
+ * An ephemeral key pair (k, kG) of a Certificate Authority (CA), used to issue a single implicit
+ * certificate.
+ *
+ * <p>The private value is held as an octet string so that it can be wiped with {@link #destroy()}
+ * once the certificate has been issued.
+ */
+public class EphemeralKeyPair {
+  private final byte[] privateValue;
+  private final ECPoint publicPoint;
+
+  private EphemeralKeyPair(byte[] privateValue, ECPoint publicPoint) {
+    this.privateValue = privateValue;
+    this.publicPoint = publicPoint;
+  }
+
+  /**
+   * Generate a new key pair, with k chosen uniformly from [1, n-1].
+   *
+   * @param generator Table for the base point of the curve.
+   * @param random Source of randomness.
+   *
+   * @return The new key pair.
+   */
+  public static EphemeralKeyPair generate(GeneratorTable generator, SecureRandom random) {
+    BigInteger n = generator.getCurveParameters().getN();
+
+    return fromPrivateValue(generator,
+        BigIntegers.createRandomInRange(BigInteger.ONE, n.subtract(BigInteger.ONE), random));
+  }
+
+  /**
+   * Create the key pair of a given private value.
+   *
+   * @param generator Table for the base point of the curve.
+   * @param k The private value, in [1, n-1].
+   *
+   * @return The key pair (k, kG).
+   */
+  public static EphemeralKeyPair fromPrivateValue(GeneratorTable generator, BigInteger k) {
+    BigInteger n = generator.getCurveParameters().getN();
+
+    // Normalized now, so the issuing thread does not pay for the conversion
+    return new EphemeralKeyPair(
+        BigIntegers.asUnsignedByteArray(BigIntegers.getUnsignedByteLength(n), k),
+        generator.multiply(k).normalize());
+  }
+
+  /**
+   * Returns the private value k.
+   *
+   * @return The private value.
+   */
+  public BigInteger getPrivateValue() {
+    return new BigInteger(1, privateValue);
+  }
+
+  /**
+   * Returns the private value k as an unsigned octet string as long as the curve order. The array
+   * is not copied, and is wiped by {@link #destroy()}.
+   *
+   * @return The private value octets.
+   */
+  byte[] getPrivateValueOctets() {
+    return privateValue;
+  }
+
+  /**
+   * Returns the public point kG.
+   *
+   * @return The public point.
+   */
+  public ECPoint getPublicPoint() {
+    return publicPoint;
+  }
+
+  /**
+   * Overwrite the private value with zeros. The key pair must not be used afterwards.
+   */
+  public void destroy() {
+    Arrays.fill(privateValue, (byte) 0);
+  }
+}
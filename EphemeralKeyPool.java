@@ -0,0 +1,127 @@
+import java.io.Closeable;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of pre-generated Certificate Authority (CA) ephemeral key pairs (k, kG) for Elliptic Curve
+ * Qu-Vanstone (ECQV) issuance.
+ *
+ * <p>Background worker threads keep the pool filled up to its depth, so issuance only has to take
+ * a ready key pair instead of computing kG on the request path. Each key pair is handed out once,
+ * and the caller is responsible for destroying it after use. If the pool is empty, a key pair is
+ * generated on the calling thread. Instances are safe for use by multiple concurrent threads.
+ */
+public class EphemeralKeyPool implements Closeable {
+  private final GeneratorTable generator;
+  private final SecureRandom random = new SecureRandom();
+  private final BlockingQueue<EphemeralKeyPair> pool;
+  private final List<Thread> workers;
+
+  private volatile boolean closed;
+
+  /**
+   * Create a new instance and start its worker threads.
+   *
+   * @param algorithm Required. ECQV signature algorithm of the provider using the pool.
+   * @param depth Number of key pairs to keep ready, greater than zero.
+   * @param workerCount Number of worker threads filling the pool, greater than zero.
+   *
+   * @throws IllegalArgumentException if depth or workerCount is not greater than zero.
+   * @throws UnsupportedOperationException if the algorithm is not based on ECQV.
+   */
+  public EphemeralKeyPool(SignatureAlgorithms algorithm, int depth, int workerCount)
+      throws IllegalArgumentException, UnsupportedOperationException {
+    if (depth <= 0 || workerCount <= 0) {
+      throw new IllegalArgumentException(
+          "Pool depth and worker count must be greater than zero: " + depth + ", " + workerCount);
+    }
+
+    generator = GeneratorTable.getInstance(algorithm);
+    pool = new ArrayBlockingQueue<EphemeralKeyPair>(depth);
+    workers = new ArrayList<Thread>(workerCount);
+
+    for (int i = 0; i < workerCount; i++) {
+      Thread worker = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          fill();
+        }
+      }, "ecqv-ephemeral-key-pool-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+  }
+
+  /**
+   * Take a key pair from the pool, or generate one on the calling thread if the pool is empty.
+   *
+   * @return A key pair that has not been handed out before.
+   */
+  public EphemeralKeyPair take() {
+    EphemeralKeyPair keyPair = pool.poll();
+
+    return (keyPair != null) ? keyPair : EphemeralKeyPair.generate(generator, random);
+  }
+
+  /**
+   * Returns the number of key pairs ready in the pool.
+   *
+   * @return Number of ready key pairs.
+   */
+  public int size() {
+    return pool.size();
+  }
+
+  /**
+   * Stop the worker threads and destroy the key pairs left in the pool. Taking from a closed pool
+   * generates key pairs on the calling thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+
+    for (Thread worker : workers) {
+      try {
+        worker.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+
+    EphemeralKeyPair keyPair;
+    while ((keyPair = pool.poll()) != null) {
+      keyPair.destroy();
+    }
+  }
+
+  /**
+   * Returns the generator table of the curve the key pairs are generated on.
+   *
+   * @return Generator table.
+   */
+  GeneratorTable getGeneratorTable() {
+    return generator;
+  }
+
+  private void fill() {
+    while (!closed) {
+      EphemeralKeyPair keyPair = EphemeralKeyPair.generate(generator, random);
+
+      try {
+        pool.put(keyPair);
+      } catch (InterruptedException ex) {
+        keyPair.destroy();
+        return;
+      }
+    }
+  }
+}
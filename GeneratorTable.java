@@ -0,0 +1,94 @@
+import java.math.BigInteger;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECMultiplier;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.math.ec.FixedPointUtil;
+
+/**
+ * Fixed-base comb precomputation for the base point G of the curve used by an Elliptic Curve
+ * Qu-Vanstone (ECQV) signature algorithm.
+ *
+ * <p>One table is built for every ECQV entry of {@link SignatureAlgorithms} when this class is
+ * loaded, and is shared by all providers in the process. The curve is configured with its GLV
+ * endomorphism, if {@link CurveEndomorphisms} finds one.
+ */
+public final class GeneratorTable {
+  private static final Map<SignatureAlgorithms, GeneratorTable> tables = buildTables();
+
+  private final ECParameterSpec curveParameters;
+  private final ECMultiplier multiplier;
+
+  /**
+   * Create a new instance and precompute the comb table for the curve's base point.
+   *
+   * @param curveParameters Parameters of the curve.
+   */
+  private GeneratorTable(ECParameterSpec curveParameters) {
+    this.curveParameters = curveParameters;
+    multiplier = new FixedPointCombMultiplier();
+
+    // Stores the table with the base point itself, so every multiplier sharing G uses it.
+    FixedPointUtil.precompute(curveParameters.getG());
+  }
+
+  /**
+   * Returns the table for the given ECQV signature algorithm.
+   *
+   * @param algorithm An ECQV signature algorithm.
+   *
+   * @return The table for the algorithm's curve.
+   * @throws UnsupportedOperationException if the algorithm is not based on ECQV.
+   */
+  public static GeneratorTable getInstance(SignatureAlgorithms algorithm)
+      throws UnsupportedOperationException {
+    GeneratorTable table = tables.get(algorithm);
+
+    if (table == null) {
+      throw new UnsupportedOperationException(
+          "Generator tables are only available for ECQV-based signature types");
+    }
+
+    return table;
+  }
+
+  /**
+   * Returns the parameters of the curve whose base point this table covers.
+   *
+   * @return Curve parameters.
+   */
+  public ECParameterSpec getCurveParameters() {
+    return curveParameters;
+  }
+
+  /**
+   * Computes k*G.
+   *
+   * @param k Scalar multiplier.
+   *
+   * @return The point k*G.
+   */
+  public ECPoint multiply(BigInteger k) {
+    return multiplier.multiply(curveParameters.getG(), k);
+  }
+
+  private static Map<SignatureAlgorithms, GeneratorTable> buildTables() {
+    Map<SignatureAlgorithms, GeneratorTable> tables =
+        new EnumMap<SignatureAlgorithms, GeneratorTable>(SignatureAlgorithms.class);
+
+    for (SignatureAlgorithms algorithm : SignatureAlgorithms.values()) {
+      if (algorithm.isEcqv()) {
+        CryptoAlgorithms curve = algorithm.getCryptoAlgorithm();
+
+        tables.put(algorithm, new GeneratorTable(CurveEndomorphisms.configure(
+            curve, ECNamedCurveTable.getParameterSpec(curve.getAlgorithmName()))));
+      }
+    }
+
+    return tables;
+  }
+}
@@ -0,0 +1,109 @@
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A chain of Elliptic Curve Qu-Vanstone (ECQV) implicit certificates, from the certificate issued
+ * by a root CA down to a leaf certificate. The public key of each certificate is reconstructed from
+ * its issuer's public key, so the whole chain yields the leaf public key from the root CA's public
+ * key.
+ *
+ * <p>All certificates of a chain use the same signature algorithm, as reconstruction requires the
+ * issuer's key to be on the same curve. A chain must not be modified while it is being
+ * reconstructed.
+ */
+public class ImplicitCertificateChain {
+  private final SignatureAlgorithms algorithm;
+  private final PublicKey rootKey;
+  private final List<byte[]> identifyingInfo = new ArrayList<byte[]>();
+  private final List<byte[]> reconstructionPoints = new ArrayList<byte[]>();
+
+  /**
+   * Create a new, empty instance.
+   *
+   * @param algorithm Required. ECQV signature algorithm of the chain.
+   * @param rootKey Required. Public key of the root CA that issued the first certificate.
+   *
+   * @throws IllegalArgumentException if algorithm or rootKey is missing.
+   * @throws UnsupportedOperationException if the algorithm is not based on ECQV.
+   */
+  public ImplicitCertificateChain(SignatureAlgorithms algorithm, PublicKey rootKey)
+      throws IllegalArgumentException, UnsupportedOperationException {
+    if (algorithm == null) {
+      throw new IllegalArgumentException("Missing algorithm OID");
+    } else if (rootKey == null) {
+      throw new IllegalArgumentException("Missing root CA public key");
+    } else if (!algorithm.isEcqv()) {
+      throw new UnsupportedOperationException(
+          "Chains can only be built with ECQV-based signature types");
+    }
+
+    this.algorithm = algorithm;
+    this.rootKey = rootKey;
+  }
+
+  /**
+   * Append a certificate, issued by the holder of the previous certificate's key, or by the root CA
+   * for the first certificate.
+   *
+   * @param identifyingInfo the identity portion of the implicit certificate
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   *
+   * @return this chain
+   */
+  public ImplicitCertificateChain add(byte[] identifyingInfo, byte[] reconstructionPoint) {
+    this.identifyingInfo.add(identifyingInfo);
+    reconstructionPoints.add(reconstructionPoint);
+
+    return this;
+  }
+
+  /**
+   * Returns the signature algorithm of the chain.
+   *
+   * @return Signature algorithm.
+   */
+  public SignatureAlgorithms getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Returns the public key of the root CA.
+   *
+   * @return Root CA public key.
+   */
+  public PublicKey getRootKey() {
+    return rootKey;
+  }
+
+  /**
+   * Returns the number of certificates in the chain.
+   *
+   * @return Certificate count.
+   */
+  public int size() {
+    return identifyingInfo.size();
+  }
+
+  /**
+   * Returns the identity portion of a certificate.
+   *
+   * @param index Position of the certificate, 0 being issued by the root CA.
+   *
+   * @return the identity portion of the implicit certificate
+   */
+  public byte[] getIdentifyingInfo(int index) {
+    return identifyingInfo.get(index);
+  }
+
+  /**
+   * Returns the reconstruction point of a certificate.
+   *
+   * @param index Position of the certificate, 0 being issued by the root CA.
+   *
+   * @return the reconstruction point for the implicit certificate
+   */
+  public byte[] getReconstructionPoint(int index) {
+    return reconstructionPoints.get(index);
+  }
+}
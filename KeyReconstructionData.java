@@ -14,6 +14,16 @@ public class KeyReconstructionData {
    * @param privateKeyData Reconstruction data for the private key.
    */
   public KeyReconstructionData(byte[] publicKeyData, byte[] privateKeyData) {
+    this(true, publicKeyData, privateKeyData);
+  }
+
+  private KeyReconstructionData(boolean copy, byte[] publicKeyData, byte[] privateKeyData) {
+    if (!copy) {
+      publicKeyReconstructionData = publicKeyData;
+      privateKeyReconstructionData = privateKeyData;
+      return;
+    }
+
     publicKeyReconstructionData = new byte[publicKeyData.length];
     System.arraycopy(publicKeyData, 0, publicKeyReconstructionData, 0, publicKeyData.length);
 
@@ -21,6 +31,19 @@ public class KeyReconstructionData {
     System.arraycopy(privateKeyData, 0, privateKeyReconstructionData, 0, privateKeyData.length);
   }
 
+  /**
+   * Creates a new instance that takes ownership of the given arrays instead of copying them. The
+   * caller must not modify the arrays afterwards.
+   *
+   * @param publicKeyData Reconstruction data for the public key.
+   * @param privateKeyData Reconstruction data for the private key.
+   *
+   * @return The new instance.
+   */
+  static KeyReconstructionData wrap(byte[] publicKeyData, byte[] privateKeyData) {
+    return new KeyReconstructionData(false, publicKeyData, privateKeyData);
+  }
+
   public byte[] getPublicKeyReconstructionData() {
     return publicKeyReconstructionData;
   }
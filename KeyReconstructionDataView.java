@@ -0,0 +1,108 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view of one record of {@link KeyReconstructionRecords}.
+ *
+ * <p>The view reads the record in place: its buffers share the content of the records, and are
+ * moved to the next record rather than recreated, so a loop over any number of records allocates
+ * only when it switches to another records buffer. They can be passed as they are to
+ * {@link EcqvProvider#reconstructPrivateKey(java.nio.ByteBuffer, java.nio.ByteBuffer,
+ * java.nio.ByteBuffer, java.security.PrivateKey)}. Values returned by the view are only valid until
+ * it is moved. Instances are not safe for use by multiple concurrent threads.
+ */
+public class KeyReconstructionDataView {
+  private ByteBuffer records;
+  private ByteBuffer publicKeyData;
+  private ByteBuffer privateKeyData;
+  private int offset;
+  private int pointLength;
+  private int privateKeyDataLength;
+
+  /**
+   * Returns the curve id of the record.
+   *
+   * @return Curve of the record.
+   * @throws IllegalStateException if the view has not been moved to a record.
+   * @throws IllegalArgumentException if the curve id is unknown.
+   */
+  public CryptoAlgorithms getCurve() throws IllegalStateException, IllegalArgumentException {
+    checkRecord();
+
+    return KeyReconstructionRecords.getCurve(records.get(offset) & 0xFF);
+  }
+
+  /**
+   * Returns the reconstruction point of the record, in compressed form.
+   *
+   * @return Buffer positioned at the first byte of the point and limited after the last.
+   * @throws IllegalStateException if the view has not been moved to a record.
+   */
+  public ByteBuffer getPublicKeyReconstructionData() throws IllegalStateException {
+    checkRecord();
+
+    publicKeyData.limit(publicKeyData.capacity());
+    publicKeyData.position(offset + 1);
+    publicKeyData.limit(offset + 1 + pointLength);
+
+    return publicKeyData;
+  }
+
+  /**
+   * Returns the private key reconstruction data of the record.
+   *
+   * @return Buffer positioned at the first byte of the data and limited after the last.
+   * @throws IllegalStateException if the view has not been moved to a record.
+   */
+  public ByteBuffer getPrivateKeyReconstructionData() throws IllegalStateException {
+    checkRecord();
+
+    int start = offset + 1 + pointLength;
+    privateKeyData.limit(privateKeyData.capacity());
+    privateKeyData.position(start);
+    privateKeyData.limit(start + privateKeyDataLength);
+
+    return privateKeyData;
+  }
+
+  /**
+   * Copy the record into a new {@link KeyReconstructionData}.
+   *
+   * @return The reconstruction data of the record.
+   * @throws IllegalStateException if the view has not been moved to a record.
+   */
+  public KeyReconstructionData toKeyReconstructionData() throws IllegalStateException {
+    byte[] publicKeyBytes = new byte[pointLength];
+    byte[] privateKeyBytes = new byte[privateKeyDataLength];
+
+    getPublicKeyReconstructionData().get(publicKeyBytes);
+    getPrivateKeyReconstructionData().get(privateKeyBytes);
+
+    return KeyReconstructionData.wrap(publicKeyBytes, privateKeyBytes);
+  }
+
+  /**
+   * Move the view to a record.
+   *
+   * @param records Buffer holding the record.
+   * @param offset Offset of the record in the buffer.
+   * @param pointLength Length of the reconstruction point.
+   * @param privateKeyDataLength Length of the private key reconstruction data.
+   */
+  void moveTo(ByteBuffer records, int offset, int pointLength, int privateKeyDataLength) {
+    if (this.records != records) {
+      this.records = records;
+      publicKeyData = records.duplicate();
+      privateKeyData = records.duplicate();
+    }
+
+    this.offset = offset;
+    this.pointLength = pointLength;
+    this.privateKeyDataLength = privateKeyDataLength;
+  }
+
+  private void checkRecord() throws IllegalStateException {
+    if (records == null) {
+      throw new IllegalStateException("View has not been moved to a record");
+    }
+  }
+}
@@ -0,0 +1,217 @@
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+
+/**
+ * Fixed-length binary records of Elliptic Curve Qu-Vanstone (ECQV) key reconstruction data,
+ * packed back to back in a single buffer.
+ *
+ * <p>Each record is made of:
+ * <ul>
+ * <li>the curve id, one byte fixed for each curve by this format, so it does not depend on the
+ * order of {@link CryptoAlgorithms}</li>
+ * <li>the compressed reconstruction point, as long as a compressed point of the curve</li>
+ * <li>the private key reconstruction data r, an octet string as long as the curve order</li>
+ * </ul>
+ *
+ * <p>Records are read through a reusable {@link KeyReconstructionDataView}, whose buffers can be
+ * passed to {@link EcqvProvider#reconstructPrivateKey(java.nio.ByteBuffer, java.nio.ByteBuffer,
+ * java.nio.ByteBuffer, java.security.PrivateKey)}, so a buffer or mapped file holding any number of
+ * records can be read back without copying each record. Instances are not safe for use by
+ * multiple concurrent threads.
+ */
+public class KeyReconstructionRecords {
+  /** The curve of each curve id; the ids are part of the format and must never change. */
+  private static final CryptoAlgorithms[] curvesById = {
+    CryptoAlgorithms.CURVE_SECP192R1,
+    CryptoAlgorithms.CURVE_SECP224R1,
+    CryptoAlgorithms.CURVE_SECT233K1,
+    CryptoAlgorithms.CURVE_SECT233R1,
+    CryptoAlgorithms.CURVE_SECP256R1,
+    CryptoAlgorithms.CURVE_SECP384R1,
+    CryptoAlgorithms.CURVE_SECP521R1
+  };
+
+  private static final Map<CryptoAlgorithms, int[]> fieldLengths = buildFieldLengths();
+
+  private final CryptoAlgorithms curve;
+  private final byte curveId;
+  private final ByteBuffer buffer;
+  private final ByteBuffer writer;
+  private final int pointLength;
+  private final int privateKeyDataLength;
+  private final int recordLength;
+
+  /**
+   * Create a view of the records held in a buffer, from its position to its limit.
+   *
+   * @param curve Required. Curve of the records.
+   * @param buffer Required. Buffer holding the records, such as a mapped file.
+   *
+   * @throws IllegalArgumentException if the curve is not an elliptic curve, or the buffer does not
+   *         hold a whole number of records.
+   */
+  public KeyReconstructionRecords(CryptoAlgorithms curve, ByteBuffer buffer)
+      throws IllegalArgumentException {
+    int[] lengths = fieldLengths.get(curve);
+    if (lengths == null) {
+      throw new IllegalArgumentException("Not an elliptic curve: " + curve);
+    }
+
+    this.curve = curve;
+    curveId = (byte) lengths[2];
+    this.buffer = buffer.slice();
+    writer = this.buffer.duplicate();
+    pointLength = lengths[0];
+    privateKeyDataLength = lengths[1];
+    recordLength = 1 + pointLength + privateKeyDataLength;
+
+    if (this.buffer.capacity() % recordLength != 0) {
+      throw new IllegalArgumentException(
+          "Buffer length " + this.buffer.capacity() + " is not a multiple of " + recordLength);
+    }
+  }
+
+  /**
+   * Create a heap buffer for the given number of records.
+   *
+   * @param curve Required. Curve of the records.
+   * @param count Number of records.
+   *
+   * @return The records, all zero until written.
+   * @throws IllegalArgumentException if the curve is not an elliptic curve.
+   */
+  public static KeyReconstructionRecords allocate(CryptoAlgorithms curve, int count)
+      throws IllegalArgumentException {
+    return new KeyReconstructionRecords(curve, ByteBuffer.allocate(count * recordLength(curve)));
+  }
+
+  /**
+   * Returns the length of one record on the given curve.
+   *
+   * @param curve Required. Curve of the records.
+   *
+   * @return Record length in bytes.
+   * @throws IllegalArgumentException if the curve is not an elliptic curve.
+   */
+  public static int recordLength(CryptoAlgorithms curve) throws IllegalArgumentException {
+    int[] lengths = fieldLengths.get(curve);
+    if (lengths == null) {
+      throw new IllegalArgumentException("Not an elliptic curve: " + curve);
+    }
+
+    return 1 + lengths[0] + lengths[1];
+  }
+
+  /**
+   * Returns the curve of the records.
+   *
+   * @return Curve of the records.
+   */
+  public CryptoAlgorithms getCurve() {
+    return curve;
+  }
+
+  /**
+   * Returns the number of records.
+   *
+   * @return Number of records.
+   */
+  public int size() {
+    return buffer.capacity() / recordLength;
+  }
+
+  /**
+   * Returns the buffer holding the records, positioned at the first and limited after the last.
+   *
+   * @return A new view of the buffer, for example to write it to a channel.
+   */
+  public ByteBuffer getBuffer() {
+    return buffer.duplicate();
+  }
+
+  /**
+   * Move a view to a record.
+   *
+   * @param index Index of the record.
+   * @param view Required. The view to move; it stays valid until it is moved again.
+   *
+   * @return The view.
+   * @throws IndexOutOfBoundsException if there is no record at the index.
+   */
+  public KeyReconstructionDataView get(int index, KeyReconstructionDataView view)
+      throws IndexOutOfBoundsException {
+    view.moveTo(buffer, offset(index), pointLength, privateKeyDataLength);
+
+    return view;
+  }
+
+  /**
+   * Write a record.
+   *
+   * @param index Index of the record.
+   * @param data Required. Reconstruction data on the curve of the records.
+   *
+   * @throws IllegalArgumentException if the data does not match the lengths of the curve.
+   * @throws IndexOutOfBoundsException if there is no record at the index.
+   */
+  public void put(int index, KeyReconstructionData data)
+      throws IllegalArgumentException, IndexOutOfBoundsException {
+    byte[] publicKeyData = data.getPublicKeyReconstructionData();
+    byte[] privateKeyData = data.getPrivateKeyReconstructionData();
+
+    if (publicKeyData.length != pointLength || privateKeyData.length != privateKeyDataLength) {
+      throw new IllegalArgumentException("Reconstruction data does not match curve " + curve);
+    }
+
+    writer.position(offset(index));
+    writer.put(curveId);
+    writer.put(publicKeyData);
+    writer.put(privateKeyData);
+  }
+
+  private int offset(int index) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("No record at index " + index);
+    }
+
+    return index * recordLength;
+  }
+
+  /**
+   * Returns the curve of a curve id.
+   *
+   * @param id The curve id, an unsigned byte.
+   *
+   * @return Curve of the id.
+   * @throws IllegalArgumentException if the curve id is unknown.
+   */
+  static CryptoAlgorithms getCurve(int id) throws IllegalArgumentException {
+    if (id < 0 || id >= curvesById.length) {
+      throw new IllegalArgumentException("Unknown curve id: " + id);
+    }
+
+    return curvesById[id];
+  }
+
+  private static Map<CryptoAlgorithms, int[]> buildFieldLengths() {
+    Map<CryptoAlgorithms, int[]> lengths =
+        new EnumMap<CryptoAlgorithms, int[]>(CryptoAlgorithms.class);
+
+    for (int id = 0; id < curvesById.length; id++) {
+      CryptoAlgorithms curve = curvesById[id];
+      ECParameterSpec parameters = ECNamedCurveTable.getParameterSpec(curve.getAlgorithmName());
+
+      // compressed point, r as long as the curve order, and the curve id
+      lengths.put(curve, new int[] {
+          1 + (parameters.getCurve().getFieldSize() + 7) / 8,
+          (parameters.getN().bitLength() + 7) / 8,
+          id});
+    }
+
+    return lengths;
+  }
+}
@@ -0,0 +1,458 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * Scalar multiplication on a Koblitz curve y^2 + xy = x^3 + ax^2 + 1 over GF(2^m), with the
+ * Frobenius endomorphism tau(x, y) = (x^2, y^2) in place of point doubling, after Solinas,
+ * "Efficient Arithmetic on Koblitz Curves".
+ *
+ * <p>Tau satisfies tau^2 = mu*tau - 2, with mu = 1 if a = 1 and -1 if a = 0, so scalars are
+ * elements of Z[tau]. A scalar is reduced modulo delta = (tau^m - 1) / (tau - 1), whose norm is the
+ * order n of the base point, and written as a width-w tau-adic NAF of about m digits. Each digit
+ * then costs one tau, three squarings, plus an addition of a precomputed multiple for the non-zero
+ * digits. Sums of multiples interleave the expansions of all their terms, so tau is applied once
+ * per digit for the whole sum, and terms multiplied by one are added at the end. The multiples of
+ * the base point are precomputed once, with a wider window.
+ *
+ * <p>All points must lie on the curve of this multiplier and in the subgroup of order n, as for
+ * Bouncy Castle's own tau-adic multiplier. The digits, and so the additions, depend on the scalar,
+ * so secret scalars should only be multiplied here when timing cannot be observed. Instances are
+ * immutable and safe for use by multiple concurrent threads.
+ */
+public final class KoblitzMultiplier {
+  /** Window width for points multiplied once, such as reconstruction points. */
+  private static final int WIDTH = 4;
+
+  /** Window width for the base point, whose multiples are precomputed once. */
+  private static final int GENERATOR_WIDTH = 6;
+
+  private final ECCurve.AbstractF2m curve;
+  private final int mu;
+  private final BigInteger[] delta;
+  private final BigInteger[] deltaConjugate;
+  private final BigInteger deltaNorm;
+  private final Window unitWindow;
+  private final Window window;
+  private final Window generatorWindow;
+  private final ECPoint.AbstractF2m[] generatorTable;
+
+  /**
+   * Create a new instance and precompute the multiples of the curve's base point.
+   *
+   * @param curveParameters Parameters of a Koblitz curve.
+   *
+   * @throws IllegalArgumentException if the curve is not a Koblitz curve, or its base point order
+   *         is not the norm of delta.
+   */
+  public KoblitzMultiplier(ECParameterSpec curveParameters) throws IllegalArgumentException {
+    if (!isKoblitz(curveParameters.getCurve())) {
+      throw new IllegalArgumentException("Curve is not a Koblitz curve");
+    }
+
+    curve = (ECCurve.AbstractF2m) curveParameters.getCurve();
+    mu = curve.getA().isZero() ? -1 : 1;
+
+    int m = curve.getFieldSize();
+    BigInteger[] lucas = lucasSequence(Math.max(m, GENERATOR_WIDTH));
+
+    // delta = (tau^m - 1) / (tau - 1), with tau^m = U(m)*tau - 2*U(m-1)
+    BigInteger[] tauMinusOne = {BigInteger.ONE.negate(), BigInteger.ONE};
+    BigInteger[] dividend = multiply(
+        new BigInteger[] {lucas[m - 1].shiftLeft(1).negate().subtract(BigInteger.ONE), lucas[m]},
+        conjugate(tauMinusOne));
+    BigInteger cofactor = norm(tauMinusOne);
+    if (dividend[0].mod(cofactor).signum() != 0 || dividend[1].mod(cofactor).signum() != 0) {
+      throw new IllegalArgumentException("tau^m - 1 is not divisible by tau - 1");
+    }
+
+    delta = new BigInteger[] {dividend[0].divide(cofactor), dividend[1].divide(cofactor)};
+    deltaConjugate = conjugate(delta);
+    deltaNorm = norm(delta);
+    if (!deltaNorm.equals(curveParameters.getN())) {
+      throw new IllegalArgumentException("Base point order is not the norm of delta");
+    }
+
+    unitWindow = new Window(2, lucas, null);
+    window = new Window(WIDTH, lucas, unitWindow);
+    generatorWindow = new Window(GENERATOR_WIDTH, lucas, unitWindow);
+    generatorTable = precompute(curveParameters.getG(), generatorWindow);
+  }
+
+  /**
+   * Returns whether a curve is a Koblitz curve over GF(2^m).
+   *
+   * @param curve The curve.
+   *
+   * @return true for a Koblitz curve, false otherwise
+   */
+  public static boolean isKoblitz(ECCurve curve) {
+    return curve instanceof ECCurve.AbstractF2m && ((ECCurve.AbstractF2m) curve).isKoblitz();
+  }
+
+  /**
+   * Computes k*P.
+   *
+   * @param p A point of the curve.
+   * @param k Non-negative scalar multiplier.
+   *
+   * @return The point k*P.
+   */
+  public ECPoint multiply(ECPoint p, BigInteger k) {
+    return sumOfMultiplies(new ECPoint[] {p}, new BigInteger[] {k});
+  }
+
+  /**
+   * Computes k*G for the base point G, from its precomputed multiples.
+   *
+   * @param k Non-negative scalar multiplier.
+   *
+   * @return The point k*G.
+   */
+  public ECPoint multiplyGenerator(BigInteger k) {
+    return interleave(new ECPoint.AbstractF2m[][] {generatorTable},
+        new byte[][] {expand(k, generatorWindow)}, curve.getInfinity());
+  }
+
+  /**
+   * Computes a*P + b*Q.
+   *
+   * @param p First point.
+   * @param a Non-negative multiplier of the first point.
+   * @param q Second point.
+   * @param b Non-negative multiplier of the second point.
+   *
+   * @return The point a*P + b*Q.
+   */
+  public ECPoint sumOfTwoMultiplies(ECPoint p, BigInteger a, ECPoint q, BigInteger b) {
+    return sumOfMultiplies(new ECPoint[] {p, q}, new BigInteger[] {a, b});
+  }
+
+  /**
+   * Computes a*P + k*G for the base point G, with the precomputed multiples of G.
+   *
+   * @param p A point of the curve.
+   * @param a Non-negative multiplier of the point.
+   * @param k Non-negative multiplier of the base point.
+   *
+   * @return The point a*P + k*G.
+   */
+  public ECPoint sumWithGeneratorMultiply(ECPoint p, BigInteger a, BigInteger k) {
+    return interleave(
+        new ECPoint.AbstractF2m[][] {precompute(p, window), generatorTable},
+        new byte[][] {expand(a, window), expand(k, generatorWindow)}, curve.getInfinity());
+  }
+
+  /**
+   * Computes k1*P1 + k2*P2 + ... + kn*Pn.
+   *
+   * @param points Points of the curve, at least one.
+   * @param multipliers Non-negative multiplier of each point.
+   *
+   * @return The sum of the scalar multiples.
+   * @throws IllegalArgumentException if the arrays are empty or not the same length.
+   */
+  public ECPoint sumOfMultiplies(ECPoint[] points, BigInteger[] multipliers)
+      throws IllegalArgumentException {
+    if (points.length == 0 || points.length != multipliers.length) {
+      throw new IllegalArgumentException("Points and multipliers must be non-empty and match");
+    }
+
+    // terms multiplied by one, such as a CA public key, need no expansion
+    ECPoint sum = curve.getInfinity();
+    int expanded = 0;
+    for (BigInteger multiplier : multipliers) {
+      if (!multiplier.equals(BigInteger.ONE)) {
+        expanded++;
+      }
+    }
+
+    ECPoint.AbstractF2m[][] tables = new ECPoint.AbstractF2m[expanded][];
+    byte[][] digits = new byte[expanded][];
+    int j = 0;
+    for (int i = 0; i < points.length; i++) {
+      if (multipliers[i].equals(BigInteger.ONE)) {
+        sum = sum.add(points[i]);
+      } else {
+        tables[j] = precompute(points[i], window);
+        digits[j++] = expand(multipliers[i], window);
+      }
+    }
+
+    return interleave(tables, digits, sum);
+  }
+
+  /**
+   * Adds the tau-adic expansions of all terms to a point, most significant digit first, applying
+   * tau to the running sum once per digit.
+   */
+  private ECPoint interleave(ECPoint.AbstractF2m[][] tables, byte[][] digits, ECPoint addend) {
+    int length = 0;
+    for (byte[] termDigits : digits) {
+      length = Math.max(length, termDigits.length);
+    }
+
+    ECPoint.AbstractF2m sum = (ECPoint.AbstractF2m) curve.getInfinity();
+    for (int i = length - 1; i >= 0; i--) {
+      sum = sum.tau();
+
+      for (int j = 0; j < digits.length; j++) {
+        if (i < digits[j].length) {
+          int digit = digits[j][i];
+          if (digit > 0) {
+            sum = (ECPoint.AbstractF2m) sum.add(tables[j][digit >>> 1]);
+          } else if (digit < 0) {
+            sum = (ECPoint.AbstractF2m) sum.subtract(tables[j][-digit >>> 1]);
+          }
+        }
+      }
+    }
+
+    return sum.add(addend);
+  }
+
+  /**
+   * Precomputes alpha(u)*P for the odd digits u of a window, in affine coordinates so that the
+   * additions of the multiplication can use mixed coordinates.
+   */
+  private ECPoint.AbstractF2m[] precompute(ECPoint p, Window digitWindow) {
+    ECPoint.AbstractF2m point = (ECPoint.AbstractF2m) p.normalize();
+    ECPoint[] table = new ECPoint[digitWindow.alphaDigits.length];
+
+    for (int i = 0; i < table.length; i++) {
+      table[i] = interleave(new ECPoint.AbstractF2m[][] {{point}},
+          new byte[][] {digitWindow.alphaDigits[i]}, curve.getInfinity());
+    }
+    curve.normalizeAll(table);
+
+    ECPoint.AbstractF2m[] precomputed = new ECPoint.AbstractF2m[table.length];
+    for (int i = 0; i < table.length; i++) {
+      precomputed[i] = (ECPoint.AbstractF2m) table[i];
+    }
+
+    return precomputed;
+  }
+
+  /** Reduces a scalar modulo delta and returns its width-w tau-adic NAF. */
+  private byte[] expand(BigInteger k, Window digitWindow) {
+    BigInteger[] rho = remainder(new BigInteger[] {k, BigInteger.ZERO}, delta, deltaConjugate,
+        deltaNorm);
+
+    return digitWindow.tauAdicNaf(rho);
+  }
+
+  /**
+   * Returns x modulo d in Z[tau]: x - q*d, where q is x/d rounded to the nearest element of Z[tau]
+   * with Solinas' rounding, so that the remainder has a small norm.
+   */
+  private BigInteger[] remainder(
+      BigInteger[] x, BigInteger[] d, BigInteger[] dConjugate, BigInteger dNorm) {
+    // x/d = x*conj(d)/N(d)
+    BigInteger[] numerator = multiply(x, dConjugate);
+    BigInteger[] q = round(numerator[0], numerator[1], dNorm);
+    BigInteger[] qd = multiply(q, d);
+
+    return new BigInteger[] {x[0].subtract(qd[0]), x[1].subtract(qd[1])};
+  }
+
+  /**
+   * Rounds (lambda0 + lambda1*tau) / denominator to the element of Z[tau] nearest in norm, with
+   * exact rational arithmetic.
+   */
+  private BigInteger[] round(BigInteger lambda0, BigInteger lambda1, BigInteger denominator) {
+    BigInteger twice = denominator.shiftLeft(1);
+    BigInteger f0 = floorDivide(lambda0.shiftLeft(1).add(denominator), twice);
+    BigInteger f1 = floorDivide(lambda1.shiftLeft(1).add(denominator), twice);
+
+    // eta0 and eta1 are the fractional parts, scaled by the denominator
+    BigInteger eta0 = lambda0.subtract(f0.multiply(denominator));
+    BigInteger eta1 = timesMu(lambda1.subtract(f1.multiply(denominator)));
+    BigInteger eta = eta0.shiftLeft(1).add(eta1);
+    BigInteger check1 = eta0.subtract(eta1.multiply(BigInteger.valueOf(3)));
+    BigInteger check2 = eta0.add(eta1.shiftLeft(2));
+    int h0 = 0;
+    int h1 = 0;
+
+    if (eta.compareTo(denominator) >= 0) {
+      if (check1.compareTo(denominator.negate()) < 0) {
+        h1 = mu;
+      } else {
+        h0 = 1;
+      }
+    } else if (check2.compareTo(twice) >= 0) {
+      h1 = mu;
+    }
+
+    if (eta.compareTo(denominator.negate()) < 0) {
+      if (check1.compareTo(denominator) >= 0) {
+        h1 = -mu;
+      } else {
+        h0 = -1;
+      }
+    } else if (check2.compareTo(twice.negate()) < 0) {
+      h1 = -mu;
+    }
+
+    return new BigInteger[] {f0.add(BigInteger.valueOf(h0)), f1.add(BigInteger.valueOf(h1))};
+  }
+
+  /** Returns U(0) ... U(count) with U(0) = 0, U(1) = 1 and U(k+1) = mu*U(k) - 2*U(k-1). */
+  private BigInteger[] lucasSequence(int count) {
+    BigInteger[] lucas = new BigInteger[count + 1];
+    lucas[0] = BigInteger.ZERO;
+    lucas[1] = BigInteger.ONE;
+
+    for (int k = 1; k < count; k++) {
+      lucas[k + 1] = timesMu(lucas[k]).subtract(lucas[k - 1].shiftLeft(1));
+    }
+
+    return lucas;
+  }
+
+  /** (x0 + x1*tau)(y0 + y1*tau), with tau^2 = mu*tau - 2. */
+  private BigInteger[] multiply(BigInteger[] x, BigInteger[] y) {
+    BigInteger x1y1 = x[1].multiply(y[1]);
+
+    return new BigInteger[] {
+        x[0].multiply(y[0]).subtract(x1y1.shiftLeft(1)),
+        x[0].multiply(y[1]).add(x[1].multiply(y[0])).add(timesMu(x1y1))};
+  }
+
+  /** The conjugate of x0 + x1*tau, whose tau is mu - tau. */
+  private BigInteger[] conjugate(BigInteger[] x) {
+    return new BigInteger[] {x[0].add(timesMu(x[1])), x[1].negate()};
+  }
+
+  /** The norm x0^2 + mu*x0*x1 + 2*x1^2 of x0 + x1*tau. */
+  private BigInteger norm(BigInteger[] x) {
+    return x[0].multiply(x[0]).add(timesMu(x[0].multiply(x[1])))
+        .add(x[1].multiply(x[1]).shiftLeft(1));
+  }
+
+  private BigInteger timesMu(BigInteger x) {
+    return mu == 1 ? x : x.negate();
+  }
+
+  private static BigInteger floorDivide(BigInteger dividend, BigInteger divisor) {
+    BigInteger[] qr = dividend.divideAndRemainder(divisor);
+
+    return qr[1].signum() < 0 ? qr[0].subtract(BigInteger.ONE) : qr[0];
+  }
+
+  /**
+   * The digits of width-w tau-adic NAFs: odd u with |u| < 2^(w-1), each standing for the element
+   * alpha(u) of least norm that is congruent to u modulo tau^w.
+   */
+  private final class Window {
+    private final int width;
+
+    /** The image of tau in Z / 2^w, so that x0 + x1*tau is congruent to x0 + x1*tw mod tau^w. */
+    private final int tw;
+
+    /** alpha(u) for u = 1, 3, ..., 2^(w-1) - 1. */
+    private final BigInteger[][] alphas;
+    private final long[][] smallAlphas;
+
+    /** Width-2 tau-adic NAF of each alpha(u), to precompute alpha(u)*P. */
+    private final byte[][] alphaDigits;
+
+    Window(int width, BigInteger[] lucas, Window unit) {
+      BigInteger modulus = BigInteger.ONE.shiftLeft(width);
+
+      this.width = width;
+      tw = lucas[width - 1].shiftLeft(1).multiply(lucas[width].modInverse(modulus)).mod(modulus)
+          .intValue();
+
+      // tau^w = U(w)*tau - 2*U(w-1), of norm 2^w
+      BigInteger[] tauPower = {lucas[width - 1].shiftLeft(1).negate(), lucas[width]};
+      BigInteger[] tauPowerConjugate = conjugate(tauPower);
+
+      alphas = new BigInteger[1 << (width - 2)][];
+      smallAlphas = new long[alphas.length][];
+      alphaDigits = new byte[alphas.length][];
+      for (int i = 0; i < alphas.length; i++) {
+        alphas[i] = remainder(new BigInteger[] {BigInteger.valueOf(2 * i + 1), BigInteger.ZERO},
+            tauPower, tauPowerConjugate, modulus);
+        smallAlphas[i] = new long[] {alphas[i][0].longValue(), alphas[i][1].longValue()};
+        alphaDigits[i] = unit == null ? new byte[] {1} : unit.tauAdicNaf(alphas[i]);
+      }
+    }
+
+    /** Returns the width-w tau-adic NAF of rho, least significant digit first. */
+    byte[] tauAdicNaf(BigInteger[] rho) {
+      int mask = (1 << width) - 1;
+      int half = 1 << (width - 1);
+      byte[] digits = new byte[Math.max(norm(rho).bitLength(), 30) + 4 + width];
+      BigInteger r0 = rho[0];
+      BigInteger r1 = rho[1];
+      int length = 0;
+
+      while (r0.signum() != 0 || r1.signum() != 0) {
+        if (r0.bitLength() < 62 && r1.bitLength() < 62) {
+          // the norm halves with every digit, so the rest fits in longs
+          return tauAdicNaf(r0.longValue(), r1.longValue(), digits, length);
+        }
+
+        if (r0.testBit(0)) {
+          // u = r0 + r1*tw mods 2^w
+          int u = (r0.intValue() + r1.intValue() * tw) & mask;
+          if (u >= half) {
+            u -= 1 << width;
+          }
+
+          BigInteger[] alpha = alphas[Math.abs(u) >>> 1];
+          if (u > 0) {
+            r0 = r0.subtract(alpha[0]);
+            r1 = r1.subtract(alpha[1]);
+          } else {
+            r0 = r0.add(alpha[0]);
+            r1 = r1.add(alpha[1]);
+          }
+          digits[length] = (byte) u;
+        }
+        length++;
+
+        // divide by tau: (r0 + r1*tau)/tau = (r1 + mu*r0/2) - (r0/2)*tau
+        BigInteger half0 = r0.shiftRight(1);
+        r0 = r1.add(timesMu(half0));
+        r1 = half0.negate();
+      }
+
+      return Arrays.copyOf(digits, length);
+    }
+
+    /** Continues {@link #tauAdicNaf(BigInteger[])} once r0 and r1 fit in 62 bits. */
+    private byte[] tauAdicNaf(long r0, long r1, byte[] digits, int length) {
+      int mask = (1 << width) - 1;
+      int half = 1 << (width - 1);
+
+      while (r0 != 0 || r1 != 0) {
+        if ((r0 & 1) != 0) {
+          int u = ((int) r0 + (int) r1 * tw) & mask;
+          if (u >= half) {
+            u -= 1 << width;
+          }
+
+          if (u > 0) {
+            r0 -= smallAlphas[u >>> 1][0];
+            r1 -= smallAlphas[u >>> 1][1];
+          } else {
+            r0 += smallAlphas[-u >>> 1][0];
+            r1 += smallAlphas[-u >>> 1][1];
+          }
+          digits[length] = (byte) u;
+        }
+        length++;
+
+        long half0 = r0 >> 1;
+        r0 = r1 + mu * half0;
+        r1 = -half0;
+      }
+
+      return Arrays.copyOf(digits, length);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.BigIntegers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the point multiplications of the ECQV operations on sect233k1, computed by the generic
+ * path, {@link MultiScalarMultiplier} and the comb of {@link GeneratorTable}, and by the tau-adic
+ * path of {@link KoblitzMultiplier}:
+ *
+ * <ul>
+ * <li>reconstruction: e*Pu + Qca, for a freshly decoded Pu and a registered CA point;
+ * <li>issuance: the check e*Pu + dCa*G;
+ * <li>verification: dU*G;
+ * <li>chain: e1*P1 + e2*P2 + e3*P3 + Qroot, for a chain of three certificates.
+ * </ul>
+ *
+ * <p>The reconstruction and chain points are decoded in every operation, as they are by the
+ * provider, so neither path reuses a precomputation kept with a point.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KoblitzMultiplierBenchmark {
+  private static final int CHAIN_LEVELS = 3;
+
+  private ECCurve curve;
+  private ECPoint g;
+  private GeneratorTable generator;
+  private KoblitzMultiplier koblitz;
+  private byte[][] reconstructionPoints;
+  private BigInteger[] multipliers;
+  private ECPoint caPoint;
+  private BigInteger dCa;
+
+  @Setup
+  public void setUp() throws Exception {
+    EcqvContext context = EcqvContext.getInstance(SignatureAlgorithms.ECQV_SHA256_SECT233K1);
+    ECParameterSpec curveParameters = context.getCurveParameters();
+    BigInteger n = curveParameters.getN();
+    SecureRandom random = new SecureRandom();
+
+    curve = curveParameters.getCurve();
+    g = curveParameters.getG();
+    generator = context.getGeneratorTable();
+    koblitz = context.getKoblitzMultiplier();
+
+    reconstructionPoints = new byte[CHAIN_LEVELS][];
+    multipliers = new BigInteger[CHAIN_LEVELS + 1];
+    for (int i = 0; i < CHAIN_LEVELS; i++) {
+      reconstructionPoints[i] = generator.multiply(
+          BigIntegers.createRandomInRange(BigInteger.ONE, n.subtract(BigInteger.ONE), random))
+          .getEncoded(true);
+      multipliers[i] = BigIntegers.createRandomInRange(BigInteger.ONE, n, random);
+    }
+    multipliers[CHAIN_LEVELS] = BigInteger.ONE;
+
+    caPoint = generator.multiply(
+        BigIntegers.createRandomInRange(BigInteger.ONE, n.subtract(BigInteger.ONE), random))
+        .normalize();
+    dCa = BigIntegers.createRandomInRange(BigInteger.ONE, n.subtract(BigInteger.ONE), random);
+  }
+
+  @Benchmark
+  public ECPoint reconstructionGeneric() {
+    return MultiScalarMultiplier.sumOfTwoMultiplies(
+        curve.decodePoint(reconstructionPoints[0]), multipliers[0], caPoint, BigInteger.ONE);
+  }
+
+  @Benchmark
+  public ECPoint reconstructionTauAdic() {
+    return koblitz.sumOfTwoMultiplies(
+        curve.decodePoint(reconstructionPoints[0]), multipliers[0], caPoint, BigInteger.ONE);
+  }
+
+  @Benchmark
+  public ECPoint issuanceGeneric() {
+    return MultiScalarMultiplier.sumOfTwoMultiplies(
+        curve.decodePoint(reconstructionPoints[0]), multipliers[0], g, dCa);
+  }
+
+  @Benchmark
+  public ECPoint issuanceTauAdic() {
+    return koblitz.sumWithGeneratorMultiply(
+        curve.decodePoint(reconstructionPoints[0]), multipliers[0], dCa);
+  }
+
+  @Benchmark
+  public ECPoint verificationGeneric() {
+    return generator.multiply(dCa);
+  }
+
+  @Benchmark
+  public ECPoint verificationTauAdic() {
+    return koblitz.multiplyGenerator(dCa);
+  }
+
+  @Benchmark
+  public ECPoint chainGeneric() {
+    return MultiScalarMultiplier.sumOfMultiplies(chainPoints(), multipliers);
+  }
+
+  @Benchmark
+  public ECPoint chainTauAdic() {
+    return koblitz.sumOfMultiplies(chainPoints(), multipliers);
+  }
+
+  private ECPoint[] chainPoints() {
+    ECPoint[] points = new ECPoint[CHAIN_LEVELS + 1];
+
+    for (int i = 0; i < CHAIN_LEVELS; i++) {
+      points[i] = curve.decodePoint(reconstructionPoints[i]);
+    }
+    points[CHAIN_LEVELS] = caPoint;
+
+    return points;
+  }
+}
@@ -0,0 +1,126 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative latencies with log-linear buckets, in the manner of HdrHistogram.
+ *
+ * <p>Values below 16 have a bucket each. Above that, each power of two is split into 8 buckets, so
+ * a reported value is within 12.5% of the recorded one across the whole range of long, with a
+ * fixed footprint of 488 counters. Recording is lock-free and allocates nothing. Instances are safe
+ * for use by multiple concurrent threads.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int LINEAR_LIMIT = 1 << (SUB_BUCKET_BITS + 1);
+  private static final int BUCKET_COUNT =
+      LINEAR_LIMIT + (62 - SUB_BUCKET_BITS) * (1 << SUB_BUCKET_BITS);
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a value.
+   *
+   * @param value The value; negative values are recorded as zero.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+
+    counts.incrementAndGet(bucket(value));
+    count.incrementAndGet();
+    total.addAndGet(value);
+
+    long current;
+    while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+      // another thread raised the maximum; compare again
+    }
+  }
+
+  /**
+   * Returns the number of recorded values.
+   *
+   * @return Value count.
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Returns the sum of the recorded values.
+   *
+   * @return Value total.
+   */
+  public long getTotal() {
+    return total.get();
+  }
+
+  /**
+   * Returns the largest recorded value.
+   *
+   * @return Maximum value, or zero if none was recorded.
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns the value below which the given percentage of the recorded values fall, as the upper
+   * bound of its bucket.
+   *
+   * @param percentile Percentage, from 0 to 100.
+   *
+   * @return The value at the percentile, or zero if none was recorded.
+   * @throws IllegalArgumentException if percentile is not in [0, 100].
+   */
+  public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile out of range: " + percentile);
+    }
+
+    long recorded = 0;
+    long[] snapshot = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts.get(i);
+      recorded += snapshot[i];
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), getMax());
+      }
+    }
+
+    return 0;
+  }
+
+  private static int bucket(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+
+    // the top bit selects the power of two, the next SUB_BUCKET_BITS bits the bucket within it
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+
+    return LINEAR_LIMIT + ((exponent - SUB_BUCKET_BITS - 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  private static long upperBound(int bucket) {
+    if (bucket < LINEAR_LIMIT) {
+      return bucket;
+    }
+
+    int exponent = ((bucket - LINEAR_LIMIT) >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS + 1;
+    long subBucket = (bucket - LINEAR_LIMIT) & ((1 << SUB_BUCKET_BITS) - 1);
+    int shift = exponent - SUB_BUCKET_BITS;
+
+    return (((1L << SUB_BUCKET_BITS) + subBucket + 1) << shift) - 1;
+  }
+}
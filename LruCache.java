@@ -0,0 +1,136 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded least-recently-used cache with an optional time-to-live per entry.
+ *
+ * <p>When the cache is full, adding an entry evicts the least recently used one. Entries older than
+ * the time-to-live are treated as absent and removed when looked up. Hits and misses are counted.
+ * Instances are safe for use by multiple concurrent threads.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public class LruCache<K, V> {
+  private final int maxSize;
+  private final long timeToLiveNanos;
+  private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+  private long hits;
+  private long misses;
+
+  /**
+   * Create a new instance.
+   *
+   * @param maxSize Maximum number of entries, greater than zero.
+   * @param timeToLive Time an entry stays valid after it is added. Zero or less for no expiry.
+   * @param unit Unit of timeToLive.
+   *
+   * @throws IllegalArgumentException if maxSize is not greater than zero.
+   */
+  public LruCache(int maxSize, long timeToLive, TimeUnit unit) throws IllegalArgumentException {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Cache size must be greater than zero: " + maxSize);
+    }
+
+    this.maxSize = maxSize;
+    timeToLiveNanos = (timeToLive > 0) ? unit.toNanos(timeToLive) : 0;
+    entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+        return size() > LruCache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the value cached for the given key.
+   *
+   * @param key Key to look up.
+   *
+   * @return The cached value, or null if the key is absent or its entry has expired.
+   */
+  public synchronized V get(K key) {
+    CacheEntry<V> entry = entries.get(key);
+
+    if (entry != null && timeToLiveNanos > 0
+        && System.nanoTime() - entry.created > timeToLiveNanos) {
+      entries.remove(key);
+      entry = null;
+    }
+
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+
+    hits++;
+    return entry.value;
+  }
+
+  /**
+   * Add or replace the value cached for the given key.
+   *
+   * @param key Key of the entry.
+   * @param value Value of the entry.
+   */
+  public synchronized void put(K key, V value) {
+    entries.put(key, new CacheEntry<V>(value, System.nanoTime()));
+  }
+
+  /**
+   * Remove all entries. The hit and miss counts are kept.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the number of entries, including expired entries not yet removed.
+   *
+   * @return Number of entries.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the maximum number of entries.
+   *
+   * @return Maximum number of entries.
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of lookups that found a valid entry.
+   *
+   * @return Hit count.
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of lookups that found no valid entry.
+   *
+   * @return Miss count.
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  private static final class CacheEntry<V> {
+    final V value;
+    final long created;
+
+    CacheEntry(V value, long created) {
+      this.value = value;
+      this.created = created;
+    }
+  }
+}
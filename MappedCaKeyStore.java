@@ -0,0 +1,390 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPublicKey;
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.BigIntegers;
+
+/**
+ * Read-only store of Certificate Authority (CA) public keys for Elliptic Curve Qu-Vanstone (ECQV)
+ * public key reconstruction, held off-heap in a memory-mapped file.
+ *
+ * <p>Keys are looked up by their key identifier, the SHA-1 hash of the uncompressed public point
+ * (RFC 5280 section 4.2.1.2, method 1), as carried by the authority key identifier of the
+ * certificates they issued. Every key is validated when the store is built, and stored as its
+ * affine coordinates: as reconstruction adds the CA point rather than multiplying it, the decoded,
+ * validated point is all the precomputation it can use. The records are sorted by key identifier,
+ * so a lookup is a binary search of the mapping that creates a single point, and the heap holds
+ * nothing for each key.
+ *
+ * <p>The file is this node's set of trust anchors, and may be shared by other processes, so it is
+ * not trusted as it is read: {@link #open} verifies a SHA-256 checksum of its whole content, which
+ * rejects a truncated or corrupted file, and every point looked up is checked to be a valid point
+ * of the curve's subgroup before it is used.
+ *
+ * <p>{@link #build} writes the file to a new temporary file beside its final name and moves it into
+ * place, so a store persists across restarts, concurrent builds do not write to the same file, and
+ * processes that open it while it is rebuilt see either the old or the new file. The file is mapped
+ * read-only, so every process on the host shares the same pages of the page cache. A mapping is
+ * released when its store is garbage collected. Instances are safe for use by multiple concurrent
+ * threads.
+ *
+ * <p>File layout, big-endian: the magic number, the format version, the curve name as a length
+ * byte and {@value #NAME_LENGTH} ASCII bytes, the coordinate length in bytes and the key count,
+ * then for each key its {@value #KEY_ID_LENGTH}-byte identifier, x and y, and finally the SHA-256
+ * hash of everything before it.
+ */
+public final class MappedCaKeyStore {
+  /** Length of a key identifier. */
+  public static final int KEY_ID_LENGTH = 20;
+
+  private static final int MAGIC = 0x45435143; // "ECQC"
+  private static final int VERSION = 2;
+  private static final int NAME_LENGTH = 31;
+  private static final int HEADER_LENGTH = 4 + 4 + 1 + NAME_LENGTH + 4 + 4;
+  private static final int CHECKSUM_LENGTH = 32;
+
+  private final CryptoAlgorithms curve;
+  private final int coordinateLength;
+  private final int recordLength;
+  private final int count;
+  private final ByteBuffer records;
+
+  private MappedCaKeyStore(CryptoAlgorithms curve, ByteBuffer records, int count) {
+    this.curve = curve;
+    this.records = records;
+    this.count = count;
+    coordinateLength = coordinateLength(curve);
+    recordLength = KEY_ID_LENGTH + 2 * coordinateLength;
+  }
+
+  /**
+   * Build a store of CA public keys and write it to a file, replacing any previous store.
+   *
+   * @param file Path of the store.
+   * @param curve The curve of the keys.
+   * @param caKeys The CA public keys. A key given more than once is stored once.
+   *
+   * @return the store, opened on the new file
+   *
+   * @throws IllegalArgumentException if a key is not a valid point on the curve
+   * @throws IOException if the file cannot be written
+   */
+  public static MappedCaKeyStore build(
+      Path file, CryptoAlgorithms curve, Collection<? extends PublicKey> caKeys)
+      throws IllegalArgumentException, IOException {
+    ECCurve ecCurve = ECNamedCurveTable.getParameterSpec(curve.getAlgorithmName()).getCurve();
+    int coordinateLength = coordinateLength(curve);
+    List<byte[]> sorted = new ArrayList<byte[]>(caKeys.size());
+
+    for (PublicKey caKey : caKeys) {
+      ECPoint point = ecCurve.importPoint(((BCECPublicKey) caKey).getQ()).normalize();
+      if (point.isInfinity() || !point.isValid()) {
+        throw new IllegalArgumentException("CA public key is not a valid point on the curve");
+      }
+
+      ByteBuffer record = ByteBuffer.allocate(KEY_ID_LENGTH + 2 * coordinateLength);
+      record.put(keyIdentifier(caKey));
+      record.put(BigIntegers.asUnsignedByteArray(
+          coordinateLength, point.getAffineXCoord().toBigInteger()));
+      record.put(BigIntegers.asUnsignedByteArray(
+          coordinateLength, point.getAffineYCoord().toBigInteger()));
+      sorted.add(record.array());
+    }
+
+    Collections.sort(sorted, new Comparator<byte[]>() {
+      @Override
+      public int compare(byte[] a, byte[] b) {
+        return compareKeyIds(a, b);
+      }
+    });
+
+    List<byte[]> distinct = new ArrayList<byte[]>(sorted.size());
+    for (byte[] record : sorted) {
+      if (distinct.isEmpty() || compareKeyIds(distinct.get(distinct.size() - 1), record) != 0) {
+        distinct.add(record);
+      }
+    }
+
+    byte[] name = curve.getAlgorithmName().getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+    header.putInt(MAGIC);
+    header.putInt(VERSION);
+    header.put((byte) name.length);
+    header.put(name);
+    header.position(header.position() + NAME_LENGTH - name.length);
+    header.putInt(coordinateLength);
+    header.putInt(distinct.size());
+    header.flip();
+
+    SHA256Digest checksum = new SHA256Digest();
+    Path temporary = Files.createTempFile(
+        file.toAbsolutePath().getParent(), file.getFileName() + ".", ".tmp");
+    try {
+      try {
+        // readable by the other processes of the host, as a file written in place would be
+        Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-r--r--"));
+      } catch (UnsupportedOperationException ex) {
+        // not a POSIX file system
+      }
+
+      try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING)) {
+        write(out, header, checksum);
+        for (byte[] record : distinct) {
+          write(out, ByteBuffer.wrap(record), checksum);
+        }
+
+        byte[] hash = new byte[CHECKSUM_LENGTH];
+        checksum.doFinal(hash, 0);
+        write(out, ByteBuffer.wrap(hash), null);
+        out.force(false);
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+
+    return open(file, curve);
+  }
+
+  /**
+   * Open a store written by {@link #build}, mapping its file read-only.
+   *
+   * @param file Path of the store.
+   * @param curve The curve the keys must be on.
+   *
+   * @return the store
+   *
+   * @throws IllegalArgumentException if the store holds keys on a different curve
+   * @throws IOException if the file cannot be read or is not a well-formed store
+   */
+  public static MappedCaKeyStore open(Path file, CryptoAlgorithms curve)
+      throws IllegalArgumentException, IOException {
+    MappedByteBuffer mapped;
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (in.size() < HEADER_LENGTH + CHECKSUM_LENGTH || in.size() > Integer.MAX_VALUE) {
+        throw new IOException("Malformed CA key store");
+      }
+
+      // the mapping stays valid once the channel is closed
+      mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+    }
+
+    if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+      throw new IOException("Not a CA key store, or an unsupported version");
+    }
+
+    int nameLength = mapped.get(8) & 0xFF;
+    byte[] name = new byte[Math.min(nameLength, NAME_LENGTH)];
+    for (int i = 0; i < name.length; i++) {
+      name[i] = mapped.get(9 + i);
+    }
+    if (!curve.getAlgorithmName().equals(new String(name, StandardCharsets.US_ASCII))) {
+      throw new IllegalArgumentException("CA key store is for a different curve");
+    }
+
+    int coordinateLength = mapped.getInt(9 + NAME_LENGTH);
+    int count = mapped.getInt(13 + NAME_LENGTH);
+    long expectedSize = HEADER_LENGTH
+        + (long) count * (KEY_ID_LENGTH + 2 * coordinateLength(curve)) + CHECKSUM_LENGTH;
+    if (coordinateLength != coordinateLength(curve) || count < 0
+        || mapped.capacity() != expectedSize) {
+      throw new IOException("Malformed CA key store");
+    }
+
+    // the checksum covers the header and the records
+    int contentLength = mapped.capacity() - CHECKSUM_LENGTH;
+    byte[] content = new byte[Math.min(contentLength, 1 << 16)];
+    SHA256Digest checksum = new SHA256Digest();
+    ByteBuffer reader = mapped.duplicate();
+    reader.limit(contentLength);
+    while (reader.hasRemaining()) {
+      int length = Math.min(content.length, reader.remaining());
+      reader.get(content, 0, length);
+      checksum.update(content, 0, length);
+    }
+
+    byte[] expected = new byte[CHECKSUM_LENGTH];
+    byte[] stored = new byte[CHECKSUM_LENGTH];
+    checksum.doFinal(expected, 0);
+    reader.limit(mapped.capacity());
+    reader.get(stored);
+    if (!MessageDigest.isEqual(expected, stored)) {
+      throw new IOException("CA key store checksum mismatch");
+    }
+
+    mapped.position(HEADER_LENGTH);
+    mapped.limit(contentLength);
+    return new MappedCaKeyStore(curve, mapped.slice(), count);
+  }
+
+  /**
+   * Returns the key identifier of a CA public key: the SHA-1 hash of its uncompressed point.
+   *
+   * @param caKey the CA's public key
+   *
+   * @return the {@value #KEY_ID_LENGTH}-byte key identifier
+   */
+  public static byte[] keyIdentifier(PublicKey caKey) {
+    byte[] encoded = ((BCECPublicKey) caKey).getQ().getEncoded(false);
+    SHA1Digest digest = new SHA1Digest();
+    byte[] keyId = new byte[KEY_ID_LENGTH];
+
+    digest.update(encoded, 0, encoded.length);
+    digest.doFinal(keyId, 0);
+    return keyId;
+  }
+
+  /**
+   * Returns the curve of the stored keys.
+   *
+   * @return Curve.
+   */
+  public CryptoAlgorithms getCurve() {
+    return curve;
+  }
+
+  /**
+   * Returns the number of stored keys.
+   *
+   * @return Number of keys.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Returns true if a key with the given identifier is stored.
+   *
+   * @param keyIdentifier the key identifier
+   *
+   * @return true if the key is stored, false otherwise
+   */
+  public boolean contains(byte[] keyIdentifier) {
+    return find(keyIdentifier) >= 0;
+  }
+
+  /**
+   * Returns the point of a stored key, created on the given curve.
+   *
+   * @param ecCurve the curve to create the point on, which must be the store's curve
+   * @param keyIdentifier the key identifier
+   *
+   * @return the CA's point, normalized, or null if no key has the identifier
+   *
+   * @throws IOException if the stored key is not a valid point of the curve's subgroup
+   */
+  ECPoint getPoint(ECCurve ecCurve, byte[] keyIdentifier) throws IOException {
+    int index = find(keyIdentifier);
+
+    if (index < 0) {
+      return null;
+    }
+
+    byte[] coordinate = new byte[coordinateLength];
+    int offset = index * recordLength + KEY_ID_LENGTH;
+    for (int i = 0; i < coordinateLength; i++) {
+      coordinate[i] = records.get(offset + i);
+    }
+    BigInteger x = new BigInteger(1, coordinate);
+
+    offset += coordinateLength;
+    for (int i = 0; i < coordinateLength; i++) {
+      coordinate[i] = records.get(offset + i);
+    }
+
+    try {
+      return ecCurve.validatePoint(x, new BigInteger(1, coordinate));
+    } catch (IllegalArgumentException ex) {
+      throw new IOException("Invalid CA public key in the CA key store", ex);
+    }
+  }
+
+  /** Writes a buffer to a channel, adding it to a checksum if one is given. */
+  private static void write(FileChannel out, ByteBuffer buffer, SHA256Digest checksum)
+      throws IOException {
+    if (checksum != null) {
+      checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(),
+          buffer.remaining());
+    }
+
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  /** Binary search of the records, returning the index of the key or -1. */
+  private int find(byte[] keyIdentifier) {
+    if (keyIdentifier.length != KEY_ID_LENGTH) {
+      return -1;
+    }
+
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = compareWithRecord(keyIdentifier, middle * recordLength);
+
+      if (comparison > 0) {
+        low = middle + 1;
+      } else if (comparison < 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+
+    return -1;
+  }
+
+  /** Compares a key identifier with the one of the record at an offset, as unsigned bytes. */
+  private int compareWithRecord(byte[] keyIdentifier, int offset) {
+    for (int i = 0; i < KEY_ID_LENGTH; i++) {
+      int difference = (keyIdentifier[i] & 0xFF) - (records.get(offset + i) & 0xFF);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+
+    return 0;
+  }
+
+  /** Compares the key identifiers that start two records, as unsigned bytes. */
+  private static int compareKeyIds(byte[] a, byte[] b) {
+    for (int i = 0; i < KEY_ID_LENGTH; i++) {
+      int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+
+    return 0;
+  }
+
+  private static int coordinateLength(CryptoAlgorithms curve) {
+    return (ECNamedCurveTable.getParameterSpec(curve.getAlgorithmName()).getCurve().getFieldSize()
+        + 7) / 8;
+  }
+}
@@ -0,0 +1,162 @@
+import java.math.BigInteger;
+
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.ECPointMap;
+import org.bouncycastle.math.ec.endo.GLVEndomorphism;
+
+/**
+ * Computes sums of scalar multiples k1*P1 + k2*P2 + ... + kn*Pn of elliptic curve points.
+ *
+ * <p>Two-term sums use Shamir's trick. Small batches use Straus' interleaved width-w NAF method,
+ * and batches of {@link #PIPPENGER_THRESHOLD} or more terms use Pippenger's bucket method, whose
+ * cost per term falls as the batch grows. On a curve with a GLV endomorphism phi (see
+ * {@link CurveEndomorphisms}), every method splits each term k*P into k0*P + k1*phi(P) with
+ * half-length scalars, which halves the doublings of Shamir's and Straus' methods and the windows
+ * of Pippenger's. All points must lie on the same curve and all scalars must be non-negative.
+ */
+public final class MultiScalarMultiplier {
+  /** Number of terms from which Pippenger's method is used instead of Straus' method. */
+  public static final int PIPPENGER_THRESHOLD = 512;
+
+  private MultiScalarMultiplier() {}
+
+  /**
+   * Computes a*P + b*Q.
+   *
+   * @param p First point.
+   * @param a Multiplier of the first point.
+   * @param q Second point.
+   * @param b Multiplier of the second point.
+   *
+   * @return The point a*P + b*Q.
+   */
+  public static ECPoint sumOfTwoMultiplies(ECPoint p, BigInteger a, ECPoint q, BigInteger b) {
+    return ECAlgorithms.sumOfTwoMultiplies(p, a, q, b);
+  }
+
+  /**
+   * Computes k1*P1 + k2*P2 + ... + kn*Pn.
+   *
+   * @param points Points, at least one.
+   * @param multipliers Multiplier of each point.
+   *
+   * @return The sum of the scalar multiples.
+   * @throws IllegalArgumentException if the arrays are empty or not the same length.
+   */
+  public static ECPoint sumOfMultiplies(ECPoint[] points, BigInteger[] multipliers)
+      throws IllegalArgumentException {
+    if (points.length == 0 || points.length != multipliers.length) {
+      throw new IllegalArgumentException("Points and multipliers must be non-empty and match");
+    }
+
+    if (points.length == 1) {
+      return points[0].multiply(multipliers[0]);
+    } else if (points.length == 2) {
+      return sumOfTwoMultiplies(points[0], multipliers[0], points[1], multipliers[1]);
+    } else if (points.length < PIPPENGER_THRESHOLD) {
+      // Bouncy Castle splits the scalars itself on curves with an endomorphism
+      return ECAlgorithms.sumOfMultiplies(points, multipliers);
+    }
+
+    ECCurve curve = points[0].getCurve();
+    GLVEndomorphism endomorphism = CurveEndomorphisms.getEndomorphism(curve);
+    if (endomorphism != null && curve.getOrder() != null) {
+      return pippengerGlv(points, multipliers, endomorphism, curve.getOrder());
+    }
+
+    return pippenger(points, multipliers);
+  }
+
+  /**
+   * Pippenger's method over twice the terms: each k*P becomes |k0|*(+-P) + |k1|*(+-phi(P)), where
+   * k = k0 + k1*lambda mod n, so the windows cover half as many bits.
+   */
+  private static ECPoint pippengerGlv(ECPoint[] points, BigInteger[] multipliers,
+      GLVEndomorphism endomorphism, BigInteger n) {
+    ECPointMap pointMap = endomorphism.getPointMap();
+    ECPoint[] splitPoints = new ECPoint[points.length * 2];
+    BigInteger[] splitMultipliers = new BigInteger[points.length * 2];
+
+    for (int i = 0; i < points.length; i++) {
+      BigInteger[] split = endomorphism.decomposeScalar(multipliers[i].mod(n));
+      ECPoint mapped = pointMap.map(points[i]);
+
+      splitPoints[2 * i] = split[0].signum() < 0 ? points[i].negate() : points[i];
+      splitMultipliers[2 * i] = split[0].abs();
+      splitPoints[2 * i + 1] = split[1].signum() < 0 ? mapped.negate() : mapped;
+      splitMultipliers[2 * i + 1] = split[1].abs();
+    }
+
+    return pippenger(splitPoints, splitMultipliers);
+  }
+
+  /**
+   * Pippenger's bucket method. Each c-bit window of the multipliers sorts the points into 2^c - 1
+   * buckets by digit value, and the buckets are summed with running sums, so each window costs
+   * about n + 2^(c+1) additions plus c doublings.
+   */
+  private static ECPoint pippenger(ECPoint[] points, BigInteger[] multipliers) {
+    ECCurve curve = points[0].getCurve();
+
+    // Affine inputs let every bucket addition use mixed coordinates
+    ECPoint[] normalized = points.clone();
+    curve.normalizeAll(normalized);
+
+    int maxBits = 0;
+    for (BigInteger multiplier : multipliers) {
+      maxBits = Math.max(maxBits, multiplier.bitLength());
+    }
+
+    int windowBits = windowBits(points.length);
+    int windows = (maxBits + windowBits - 1) / windowBits;
+    ECPoint[] buckets = new ECPoint[1 << windowBits];
+    ECPoint infinity = curve.getInfinity();
+    ECPoint result = infinity;
+
+    for (int window = windows - 1; window >= 0; window--) {
+      result = result.timesPow2(windowBits);
+
+      for (int j = 1; j < buckets.length; j++) {
+        buckets[j] = infinity;
+      }
+
+      int offset = window * windowBits;
+      for (int i = 0; i < normalized.length; i++) {
+        int digit = 0;
+        for (int bit = 0; bit < windowBits; bit++) {
+          if (multipliers[i].testBit(offset + bit)) {
+            digit |= 1 << bit;
+          }
+        }
+
+        if (digit != 0) {
+          buckets[digit] = buckets[digit].add(normalized[i]);
+        }
+      }
+
+      // sum(j * bucket[j]) as a sum of running sums
+      ECPoint running = infinity;
+      ECPoint windowSum = infinity;
+      for (int j = buckets.length - 1; j > 0; j--) {
+        running = running.add(buckets[j]);
+        windowSum = windowSum.add(running);
+      }
+
+      result = result.add(windowSum);
+    }
+
+    return result;
+  }
+
+  /**
+   * Window width for a batch of the given size, roughly log2(n) - 2, which keeps the bucket
+   * overhead per window below the cost of the point additions.
+   */
+  private static int windowBits(int count) {
+    int log2 = 31 - Integer.numberOfLeadingZeros(count);
+
+    return Math.max(2, Math.min(16, log2 - 2));
+  }
+}
@@ -0,0 +1,30 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * Source of the Certificate Authority (CA) ephemeral private values k used by Elliptic Curve
+ * Qu-Vanstone (ECQV) issuance, set with {@link EcqvProvider#setNonceSource}.
+ *
+ * <p>{@link DeterministicNonceSource} derives k from the issuance inputs as RFC 6979 does, and
+ * {@link DrbgNonceSource} draws it from a generator per thread. Implementations must be safe for
+ * use by multiple concurrent threads.
+ */
+public interface NonceSource {
+  /**
+   * Returns the private value k for one attempt of an issuance.
+   *
+   * @param n Order of the curve group.
+   * @param dCa The issuer's private key.
+   * @param identifyingInfo The identity portion of the implicit certificate; its position must be
+   *        unchanged on return.
+   * @param ephemeralPoint The requester's ephemeral public point Ru.
+   * @param attempt Number of earlier attempts of this issuance, which retries when its
+   *        reconstruction point is unusable.
+   *
+   * @return The private value k, in [1, n-1].
+   */
+  BigInteger nextNonce(BigInteger n, BigInteger dCa, ByteBuffer identifyingInfo,
+      ECPoint ephemeralPoint, int attempt);
+}
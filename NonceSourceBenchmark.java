@@ -0,0 +1,80 @@
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Issuance throughput of one shared {@link EcqvProvider} with each source of CA ephemeral private
+ * values: the shared {@link SecureRandom} of the provider, a {@link DrbgNonceSource} and a
+ * {@link DeterministicNonceSource}.
+ *
+ * <p>Run with {@code -t 1,2,4,...} to compare how each source scales with the number of issuing
+ * threads. With the seeded or deterministic sources a single-threaded run issues the same
+ * reconstruction data every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NonceSourceBenchmark {
+  @Param({"ECQV_SHA256_SECP256R1", "ECQV_SHA384_SECP384R1"})
+  public String algorithm;
+
+  @Param({"SECURE_RANDOM", "DRBG", "DETERMINISTIC"})
+  public String source;
+
+  private EcqvProvider provider;
+  private byte[] identifyingInfo;
+  private KeyPair caKeyPair;
+  private KeyPair devicePair;
+
+  @Setup
+  public void setUp() throws Exception {
+    Security.addProvider(new BouncyCastleProvider());
+
+    SignatureAlgorithms signatureAlgorithm = SignatureAlgorithms.valueOf(algorithm);
+    provider = new EcqvProvider(signatureAlgorithm, null);
+
+    if (source.equals("DRBG")) {
+      provider.setNonceSource(new DrbgNonceSource(new byte[32]));
+    } else if (source.equals("DETERMINISTIC")) {
+      provider.setNonceSource(
+          new DeterministicNonceSource(signatureAlgorithm.getDigestAlgorithm()));
+    }
+
+    // fixed keys and identity, so the deterministic sources repeat across runs
+    SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+    random.setSeed(1);
+    KeyPairGenerator g =
+        KeyPairGenerator.getInstance("ECDSA", BouncyCastleProvider.PROVIDER_NAME);
+    g.initialize(GeneratorTable.getInstance(signatureAlgorithm).getCurveParameters(), random);
+    caKeyPair = g.generateKeyPair();
+    devicePair = g.generateKeyPair();
+
+    // A typical M2M certificate body
+    identifyingInfo = new byte[256];
+    random.nextBytes(identifyingInfo);
+  }
+
+  @Benchmark
+  public KeyReconstructionData genReconstructionData() throws Exception {
+    return provider.genReconstructionData(
+        identifyingInfo, devicePair.getPublic(), caKeyPair.getPrivate());
+  }
+}
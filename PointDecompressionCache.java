@@ -0,0 +1,107 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * Cache of reconstruction points decoded by {@link EcqvProvider#reconstructPublicKey}.
+ *
+ * <p>Entries are keyed by the curve and the encoded point, so repeated reconstruction of the same
+ * certificate skips the modular square root of point decompression. Cached points are immutable.
+ * An encoding cached for another curve is a different entry, and its lookup a miss, so one cache
+ * may be shared by providers for different curves.
+ */
+public class PointDecompressionCache {
+  private final LruCache<PointKey, ECPoint> cache;
+
+  /**
+   * Create a new instance.
+   *
+   * @param maxSize Maximum number of cached points, greater than zero.
+   * @param timeToLive Time a point stays cached. Zero or less for no expiry.
+   * @param unit Unit of timeToLive.
+   *
+   * @throws IllegalArgumentException if maxSize is not greater than zero.
+   */
+  public PointDecompressionCache(int maxSize, long timeToLive, TimeUnit unit)
+      throws IllegalArgumentException {
+    cache = new LruCache<PointKey, ECPoint>(maxSize, timeToLive, unit);
+  }
+
+  /**
+   * Returns the number of cached points.
+   *
+   * @return Number of cached points.
+   */
+  public int size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the number of lookups that returned a cached point.
+   *
+   * @return Hit count.
+   */
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  /**
+   * Returns the number of lookups that required decoding.
+   *
+   * @return Miss count.
+   */
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  /**
+   * Remove all cached points.
+   */
+  public void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Returns the cached point for an encoding on the given curve.
+   *
+   * @param curve the curve the point must lie on
+   * @param encoded the encoded point
+   *
+   * @return The point, or null if it is not cached for the curve.
+   */
+  ECPoint get(ECCurve curve, byte[] encoded) {
+    return cache.get(new PointKey(curve, ByteBuffer.wrap(encoded)));
+  }
+
+  void put(byte[] encoded, ECPoint point) {
+    cache.put(new PointKey(point.getCurve(), ByteBuffer.wrap(encoded.clone())), point);
+  }
+
+  /** Key of an entry: the curve instance and the encoded point. */
+  private static final class PointKey {
+    private final ECCurve curve;
+    private final ByteBuffer encoded;
+
+    PointKey(ECCurve curve, ByteBuffer encoded) {
+      this.curve = curve;
+      this.encoded = encoded;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof PointKey)) {
+        return false;
+      }
+
+      PointKey key = (PointKey) other;
+      return curve == key.curve && encoded.equals(key.encoded);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(curve) + encoded.hashCode();
+    }
+  }
+}
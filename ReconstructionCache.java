@@ -0,0 +1,115 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * Cache of public keys reconstructed by {@link EcqvProvider#reconstructPublicKey}.
+ *
+ * <p>Entries are keyed by H(algorithm || identifyingInfo || reconstructionPoint || Qca), using the
+ * provider's digest, with each field preceded by its length so that no two different sets of
+ * inputs hash the same bytes. Reconstruction is a deterministic function of those inputs, so a hit
+ * returns the same public key that recomputation would produce, even from a cache shared between
+ * providers of different signature algorithms.
+ */
+public class ReconstructionCache {
+  private final LruCache<ByteBuffer, PublicKey> cache;
+
+  /**
+   * Create a new instance.
+   *
+   * @param maxSize Maximum number of cached public keys, greater than zero.
+   * @param timeToLive Time a public key stays cached. Zero or less for no expiry.
+   * @param unit Unit of timeToLive.
+   *
+   * @throws IllegalArgumentException if maxSize is not greater than zero.
+   */
+  public ReconstructionCache(int maxSize, long timeToLive, TimeUnit unit)
+      throws IllegalArgumentException {
+    cache = new LruCache<ByteBuffer, PublicKey>(maxSize, timeToLive, unit);
+  }
+
+  /**
+   * Returns the number of cached public keys.
+   *
+   * @return Number of cached public keys.
+   */
+  public int size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the number of lookups that returned a cached public key.
+   *
+   * @return Hit count.
+   */
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  /**
+   * Returns the number of lookups that required reconstruction.
+   *
+   * @return Miss count.
+   */
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  /**
+   * Remove all cached public keys.
+   */
+  public void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Compute the cache key H(algorithm || identifyingInfo || reconstructionPoint || Qca), each field
+   * preceded by its length.
+   *
+   * @param digest Digest to hash with. It is reset on return.
+   * @param algorithm the signature algorithm of the provider
+   * @param identifyingInfo the identity portion of the implicit certificate. Its position is
+   *        unchanged on return.
+   * @param reconstructionPoint the reconstruction point for the implicit certificate
+   * @param caPoint the CA's public point
+   *
+   * @return The cache key.
+   */
+  ByteBuffer key(MessageDigest digest, SignatureAlgorithms algorithm, ByteBuffer identifyingInfo,
+      byte[] reconstructionPoint, ECPoint caPoint) {
+    int position = identifyingInfo.position();
+    byte[] name = algorithm.name().getBytes(StandardCharsets.US_ASCII);
+    byte[] ca = caPoint.getEncoded(true);
+
+    updateLength(digest, name.length);
+    digest.update(name);
+    updateLength(digest, identifyingInfo.remaining());
+    digest.update(identifyingInfo);
+    identifyingInfo.position(position);
+    updateLength(digest, reconstructionPoint.length);
+    digest.update(reconstructionPoint);
+    updateLength(digest, ca.length);
+    digest.update(ca);
+
+    return ByteBuffer.wrap(digest.digest());
+  }
+
+  private static void updateLength(MessageDigest digest, int length) {
+    digest.update((byte) (length >>> 24));
+    digest.update((byte) (length >>> 16));
+    digest.update((byte) (length >>> 8));
+    digest.update((byte) length);
+  }
+
+  PublicKey get(ByteBuffer key) {
+    return cache.get(key);
+  }
+
+  void put(ByteBuffer key, PublicKey publicKey) {
+    cache.put(key, publicKey);
+  }
+}
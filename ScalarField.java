@@ -0,0 +1,338 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-width arithmetic modulo the order n of an elliptic curve group, for the scalar formulas of
+ * the Elliptic Curve Qu-Vanstone (ECQV) scheme: r = e*k + dCa (mod n) and dU = r + e*kU (mod n).
+ *
+ * <p>Elements are little-endian arrays of 32-bit limbs, as many as n needs, created with
+ * {@link #newElement()} and reused by the caller. Products are computed with Montgomery
+ * multiplication in a per-thread scratch buffer, so the arithmetic itself allocates nothing once a
+ * thread has warmed up. Every reduction is a masked subtraction and every loop runs over all the
+ * limbs, so the time and memory accesses of the arithmetic do not depend on the values, which may
+ * be secret keys. Instances are safe for use by multiple concurrent threads.
+ */
+public final class ScalarField {
+  private static final long LIMB_MASK = 0xFFFFFFFFL;
+
+  private final BigInteger order;
+  private final int[] n;
+  private final int[] montgomeryR2;
+  private final int nInverse;
+  private final int limbs;
+  private final int byteLength;
+  private final int log2n;
+  private final ThreadLocal<int[]> scratch;
+
+  /**
+   * Create a new instance.
+   *
+   * @param order Required. Order of the curve group, an odd prime.
+   *
+   * @throws IllegalArgumentException if the order is not odd and greater than one.
+   */
+  public ScalarField(BigInteger order) throws IllegalArgumentException {
+    if (order.signum() <= 0 || !order.testBit(0) || order.equals(BigInteger.ONE)) {
+      throw new IllegalArgumentException("Order must be odd and greater than one");
+    }
+
+    this.order = order;
+    limbs = (order.bitLength() + 31) / 32;
+    byteLength = (order.bitLength() + 7) / 8;
+    log2n = order.bitLength() - 1;
+
+    n = newElement();
+    setBits(order, n);
+
+    // R = 2^(32 * limbs), so R^2 mod n converts a Montgomery product back to a plain product
+    montgomeryR2 = newElement();
+    setBits(BigInteger.ONE.shiftLeft(64 * limbs).mod(order), montgomeryR2);
+
+    // -n^-1 mod 2^32 by Newton iteration; each step doubles the number of correct low bits
+    int inverse = n[0];
+    for (int i = 0; i < 4; i++) {
+      inverse *= 2 - n[0] * inverse;
+    }
+    nInverse = -inverse;
+
+    final int scratchLength = 2 * limbs + 2;
+    scratch = new ThreadLocal<int[]>() {
+      @Override
+      protected int[] initialValue() {
+        return new int[scratchLength];
+      }
+    };
+  }
+
+  /**
+   * Returns the order n.
+   *
+   * @return The order.
+   */
+  public BigInteger getOrder() {
+    return order;
+  }
+
+  /**
+   * Returns the length of an element as an octet string, the length of n.
+   *
+   * @return Octet string length.
+   */
+  public int getByteLength() {
+    return byteLength;
+  }
+
+  /**
+   * Create an element, zero until set.
+   *
+   * @return A new element.
+   */
+  public int[] newElement() {
+    return new int[limbs];
+  }
+
+  /**
+   * Set an element from an integer, reduced mod n. Integers already in [0, n) are converted without
+   * allocating.
+   *
+   * @param x The integer.
+   * @param out Receives the element.
+   */
+  public void fromBigInteger(BigInteger x, int[] out) {
+    if (x.signum() < 0 || x.compareTo(order) >= 0) {
+      x = x.mod(order);
+    }
+
+    setBits(x, out);
+  }
+
+  /**
+   * Set an element from an unsigned big-endian octet string.
+   *
+   * @param os The octet string.
+   * @param out Receives the element.
+   *
+   * @return true if the value is less than n, false otherwise; out is not meaningful then.
+   */
+  public boolean fromOctetString(byte[] os, int[] out) {
+    return load(os, 0, out) & lessThanN(out) != 0;
+  }
+
+  /**
+   * Set an element from an unsigned big-endian octet string held in a buffer. The remaining bytes
+   * of the buffer are read and its position is unchanged on return.
+   *
+   * @param os The octet string.
+   * @param out Receives the element.
+   *
+   * @return true if the value is less than n, false otherwise; out is not meaningful then.
+   */
+  public boolean fromOctetString(ByteBuffer os, int[] out) {
+    for (int i = 0; i < limbs; i++) {
+      out[i] = 0;
+    }
+
+    boolean fits = true;
+    int last = os.limit() - 1;
+    // j counts the bytes of the value from the least significant one
+    for (int j = 0; j < os.remaining(); j++) {
+      int value = os.get(last - j) & 0xFF;
+
+      if (j < 4 * limbs) {
+        out[j >>> 2] |= value << ((j & 3) << 3);
+      } else if (value != 0) {
+        fits = false;
+      }
+    }
+
+    return fits & lessThanN(out) != 0;
+  }
+
+  /**
+   * Set an element to the integer e computed from H(Certu): the hash, truncated to its leftmost
+   * floor(log2(n)) bits if it is longer. The result is always less than n.
+   *
+   * @param messageDigest Message digest.
+   * @param out Receives the element.
+   */
+  public void fromDigest(byte[] messageDigest, int[] out) {
+    int messageBitLength = messageDigest.length * 8;
+
+    load(messageDigest, Math.max(0, messageBitLength - log2n), out);
+  }
+
+  /**
+   * Write an element as an unsigned big-endian octet string as long as n.
+   *
+   * @param a The element.
+   * @param out Receives the octet string.
+   * @param offset Offset of the octet string in out.
+   */
+  public void toOctetString(int[] a, byte[] out, int offset) {
+    for (int j = 0; j < byteLength; j++) {
+      out[offset + byteLength - 1 - j] = (byte) (a[j >>> 2] >>> ((j & 3) << 3));
+    }
+  }
+
+  /**
+   * Returns an element as an integer.
+   *
+   * @param a The element.
+   * @return The integer value of the element.
+   */
+  public BigInteger toBigInteger(int[] a) {
+    byte[] os = new byte[byteLength];
+    toOctetString(a, os, 0);
+
+    return new BigInteger(1, os);
+  }
+
+  /**
+   * Computes a*b + c (mod n). The output may be any of the inputs.
+   *
+   * @param a Multiplicand, less than n.
+   * @param b Multiplier, less than n.
+   * @param c Addend, less than n.
+   * @param out Receives the result.
+   */
+  public void multiplyAdd(int[] a, int[] b, int[] c, int[] out) {
+    int[] t = scratch.get();
+
+    // a*b*R^-1, then times R^2 * R^-1 to cancel the Montgomery factor
+    montgomeryMultiply(a, 0, b, t);
+    System.arraycopy(t, 0, t, limbs + 2, limbs);
+    montgomeryMultiply(t, limbs + 2, montgomeryR2, t);
+
+    add(t, c, out);
+  }
+
+  /**
+   * Computes a*b*R^-1 (mod n) into the first limbs of t, by coarsely integrated operand scanning.
+   * The limbs of a start at the given offset, which must not overlap the first limbs + 2 of t.
+   */
+  private void montgomeryMultiply(int[] a, int offset, int[] b, int[] t) {
+    for (int j = 0; j < limbs + 2; j++) {
+      t[j] = 0;
+    }
+
+    for (int i = 0; i < limbs; i++) {
+      long bi = b[i] & LIMB_MASK;
+      long carry = 0;
+
+      // t += a * b[i]
+      for (int j = 0; j < limbs; j++) {
+        long s = (t[j] & LIMB_MASK) + (a[offset + j] & LIMB_MASK) * bi + carry;
+        t[j] = (int) s;
+        carry = s >>> 32;
+      }
+      long s = (t[limbs] & LIMB_MASK) + carry;
+      t[limbs] = (int) s;
+      t[limbs + 1] = (int) (s >>> 32);
+
+      // t = (t + m*n) / 2^32, with m chosen so the low limb cancels
+      long m = (t[0] * nInverse) & LIMB_MASK;
+      s = (t[0] & LIMB_MASK) + m * (n[0] & LIMB_MASK);
+      carry = s >>> 32;
+      for (int j = 1; j < limbs; j++) {
+        s = (t[j] & LIMB_MASK) + m * (n[j] & LIMB_MASK) + carry;
+        t[j - 1] = (int) s;
+        carry = s >>> 32;
+      }
+      s = (t[limbs] & LIMB_MASK) + carry;
+      t[limbs - 1] = (int) s;
+      t[limbs] = t[limbs + 1] + (int) (s >>> 32);
+    }
+
+    // t < 2n, so one subtraction reduces it
+    reduce(t, t[limbs]);
+  }
+
+  /**
+   * Computes a + b (mod n) for a, b less than n.
+   */
+  private void add(int[] a, int[] b, int[] out) {
+    long carry = 0;
+    for (int i = 0; i < limbs; i++) {
+      long s = (a[i] & LIMB_MASK) + (b[i] & LIMB_MASK) + carry;
+      out[i] = (int) s;
+      carry = s >>> 32;
+    }
+
+    reduce(out, (int) carry);
+  }
+
+  /**
+   * Subtracts n from the first limbs of a if a + overflow*R is at least n, where overflow is 0 or
+   * 1, without branching on the value: n is masked to zero when it is not subtracted.
+   */
+  private void reduce(int[] a, int overflow) {
+    int mask = -(overflow | (lessThanN(a) ^ 1));
+    long borrow = 0;
+
+    for (int i = 0; i < limbs; i++) {
+      long s = (a[i] & LIMB_MASK) - (n[i] & mask & LIMB_MASK) - borrow;
+      a[i] = (int) s;
+      borrow = s >>> 63;
+    }
+  }
+
+  /**
+   * Returns 1 if the first limbs of a are less than n and 0 otherwise, from the borrow of a - n
+   * over all limbs.
+   */
+  private int lessThanN(int[] a) {
+    long borrow = 0;
+
+    for (int i = 0; i < limbs; i++) {
+      long s = (a[i] & LIMB_MASK) - (n[i] & LIMB_MASK) - borrow;
+      borrow = s >>> 63;
+    }
+
+    return (int) borrow;
+  }
+
+  /**
+   * Set out to the bits of a non-negative integer that fits in the limbs.
+   */
+  private void setBits(BigInteger x, int[] out) {
+    for (int i = 0; i < limbs; i++) {
+      out[i] = 0;
+    }
+
+    // every bit position is visited, so the loop does not reveal the bit length
+    for (int bit = 0; bit < 32 * limbs; bit++) {
+      out[bit >>> 5] |= (x.testBit(bit) ? 1 : 0) << (bit & 31);
+    }
+  }
+
+  /**
+   * Set out to the unsigned big-endian octet string shifted right by the given number of bits.
+   *
+   * @return false if the shifted value does not fit in the limbs.
+   */
+  private boolean load(byte[] os, int shift, int[] out) {
+    for (int i = 0; i < limbs; i++) {
+      out[i] = 0;
+    }
+
+    int byteShift = shift >>> 3;
+    int bitShift = shift & 7;
+
+    // j counts the bytes of the result from the least significant one
+    for (int j = 0; j < os.length - byteShift; j++) {
+      int source = os.length - 1 - j - byteShift;
+      int value = (os[source] & 0xFF) >>> bitShift;
+      if (bitShift != 0 && source > 0) {
+        value |= (os[source - 1] << (8 - bitShift)) & 0xFF;
+      }
+
+      if (j < 4 * limbs) {
+        out[j >>> 2] |= value << ((j & 3) << 3);
+      } else if (value != 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,96 @@
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.util.BigIntegers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the issuance scalar step r = e*k + dCa (mod n), from H(Certu) and the octets of k to the
+ * octets of r, computed with {@link BigInteger} and with {@link ScalarField}.
+ *
+ * <p>Run with {@code -prof gc} to compare the allocation rate: the {@link ScalarField} path writes
+ * into reused elements and a reused output array, so it should report close to zero bytes per
+ * operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalarFieldBenchmark {
+  @Param({
+      "ECQV_SHA256_SECP192R1",
+      "ECQV_SHA256_SECT233K1",
+      "ECQV_SHA256_SECP256R1",
+      "ECQV_SHA384_SECP384R1",
+      "ECQV_SHA512_SECP521R1"})
+  public String algorithm;
+
+  private BigInteger n;
+  private BigInteger dCa;
+  private byte[] digest;
+  private byte[] k;
+  private byte[] r;
+
+  private ScalarField scalarField;
+  private int[] eElement;
+  private int[] kElement;
+  private int[] dCaElement;
+
+  @Setup
+  public void setUp() throws Exception {
+    SignatureAlgorithms signatureAlgorithm = SignatureAlgorithms.valueOf(algorithm);
+    SecureRandom random = new SecureRandom();
+
+    n = GeneratorTable.getInstance(signatureAlgorithm).getCurveParameters().getN();
+    dCa = BigIntegers.createRandomInRange(BigInteger.ONE, n.subtract(BigInteger.ONE), random);
+    k = BigIntegers.asUnsignedByteArray(BigIntegers.getUnsignedByteLength(n),
+        BigIntegers.createRandomInRange(BigInteger.ONE, n.subtract(BigInteger.ONE), random));
+    digest = new byte[MessageDigest.getInstance(
+        signatureAlgorithm.getDigestAlgorithm().getDigestName()).getDigestLength()];
+    random.nextBytes(digest);
+
+    scalarField = new ScalarField(n);
+    eElement = scalarField.newElement();
+    kElement = scalarField.newElement();
+    dCaElement = scalarField.newElement();
+    scalarField.fromBigInteger(dCa, dCaElement);
+    r = new byte[scalarField.getByteLength()];
+  }
+
+  @Benchmark
+  public byte[] bigInteger() {
+    int log2n = n.bitLength() - 1;
+    int messageBitLength = digest.length * 8;
+    BigInteger e = new BigInteger(1, digest);
+    if (log2n < messageBitLength) {
+      e = e.shiftRight(messageBitLength - log2n);
+    }
+
+    return BigIntegers.asUnsignedByteArray(scalarField.getByteLength(),
+        e.mod(n).multiply(new BigInteger(1, k)).add(dCa).mod(n));
+  }
+
+  @Benchmark
+  public byte[] scalarField() {
+    scalarField.fromDigest(digest, eElement);
+    scalarField.fromOctetString(k, kElement);
+    scalarField.multiplyAdd(eElement, kElement, dCaElement, kElement);
+    scalarField.toOctetString(kElement, r, 0);
+
+    return r;
+  }
+}
@@ -0,0 +1,21 @@
+/**
+ * Enumerates how an {@link EcqvProvider} multiplies points by secret scalars: the CA private key
+ * dCa during issuance and the private keys confirmed by key pair verification.
+ */
+public enum ScalarMultiplicationMode {
+  /**
+   * The fastest available multiplication. Secret scalars may be combined with public ones in
+   * interleaved width-w NAF multiplications, whose sequence of additions and table reads depends on
+   * the scalar. On Koblitz curves they use the tau-adic NAF multiplications of
+   * {@link KoblitzMultiplier}, and private keys being confirmed are multiplied with its table for
+   * the base point rather than the comb.
+   */
+  FAST,
+  /**
+   * Secret scalars are only multiplied with the base point, by the comb of
+   * {@link GeneratorTable}, which does the same additions and doublings for every scalar and reads
+   * its table through Bouncy Castle's cache-safe lookup. Only public scalars use width-w NAF
+   * multiplication.
+   */
+  CONSTANT_TIME
+}
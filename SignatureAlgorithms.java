@@ -1,5 +1,10 @@
 // Code found at https://github.com/Trustpoint/tpm2m/tree/master/java/src/ca/trustpoint/m2m
 // credit goes towards TrustPoint Innovation Technologies, Ltd.
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.sec.SECObjectIdentifiers;
 
@@ -115,6 +120,47 @@ public enum SignatureAlgorithms {
   private final BouncyCastleSignatureAlgorithms bouncyCastleName;
   private final ASN1ObjectIdentifier secOid;
 
+  /*
+   * Lookup indexes, built once when the enum is initialized. A key shared by two constants resolves
+   * to the first one declared. SEC OIDs are shared by the ECQV and ECDSA variants of a curve, so
+   * they are indexed separately for each.
+   */
+  private static final Map<M2mSignatureAlgorithmOids, SignatureAlgorithms> byM2mOid;
+  private static final Map<NfcSignatureAlgorithmOids, SignatureAlgorithms> byNfcOid;
+  private static final Map<String, SignatureAlgorithms> byOid;
+  private static final Map<String, SignatureAlgorithms> implicitBySecOid;
+  private static final Map<String, SignatureAlgorithms> explicitBySecOid;
+
+  static {
+    Map<M2mSignatureAlgorithmOids, SignatureAlgorithms> m2mOids =
+        new EnumMap<M2mSignatureAlgorithmOids, SignatureAlgorithms>(
+            M2mSignatureAlgorithmOids.class);
+    Map<NfcSignatureAlgorithmOids, SignatureAlgorithms> nfcOids =
+        new EnumMap<NfcSignatureAlgorithmOids, SignatureAlgorithms>(
+            NfcSignatureAlgorithmOids.class);
+    Map<String, SignatureAlgorithms> oids = new HashMap<String, SignatureAlgorithms>();
+    Map<String, SignatureAlgorithms> implicitSecOids = new HashMap<String, SignatureAlgorithms>();
+    Map<String, SignatureAlgorithms> explicitSecOids = new HashMap<String, SignatureAlgorithms>();
+
+    for (SignatureAlgorithms algorithm : values()) {
+      m2mOids.putIfAbsent(algorithm.m2mOid, algorithm);
+      nfcOids.putIfAbsent(algorithm.nfcOid, algorithm);
+      oids.putIfAbsent(algorithm.m2mOid.getOid(), algorithm);
+      oids.putIfAbsent(algorithm.nfcOid.getOid(), algorithm);
+
+      if (algorithm.secOid != null) {
+        (algorithm.isEcqv() ? implicitSecOids : explicitSecOids)
+            .putIfAbsent(algorithm.secOid.getId(), algorithm);
+      }
+    }
+
+    byM2mOid = Collections.unmodifiableMap(m2mOids);
+    byNfcOid = Collections.unmodifiableMap(nfcOids);
+    byOid = Collections.unmodifiableMap(oids);
+    implicitBySecOid = Collections.unmodifiableMap(implicitSecOids);
+    explicitBySecOid = Collections.unmodifiableMap(explicitSecOids);
+  }
+
   /**
    * Constructor.
    */
@@ -194,39 +240,13 @@ public enum SignatureAlgorithms {
    */
   public static SignatureAlgorithms getInstance(M2mSignatureAlgorithmOids oid)
       throws IllegalArgumentException {
-    if (oid.equals(ECDSA_SHA256_SECP192R1.m2mOid)) {
-      return ECDSA_SHA256_SECP192R1;
-    } else if (oid.equals(ECDSA_SHA256_SECP224R1.m2mOid)) {
-      return ECDSA_SHA256_SECP224R1;
-    } else if (oid.equals(ECDSA_SHA256_SECT233K1.m2mOid)) {
-      return ECDSA_SHA256_SECT233K1;
-    } else if (oid.equals(ECDSA_SHA256_SECT233R1.m2mOid)) {
-      return ECDSA_SHA256_SECT233R1;
-    } else if (oid.equals(ECQV_SHA256_SECP192R1.m2mOid)) {
-      return ECQV_SHA256_SECP192R1;
-    } else if (oid.equals(ECQV_SHA256_SECP224R1.m2mOid)) {
-      return ECQV_SHA256_SECP224R1;
-    } else if (oid.equals(ECQV_SHA256_SECT233K1.m2mOid)) {
-      return ECQV_SHA256_SECT233K1;
-    } else if (oid.equals(ECQV_SHA256_SECT233R1.m2mOid)) {
-      return ECQV_SHA256_SECT233R1;
-    } else if (oid.equals(RSA_SHA256_RSA.m2mOid)) {
-      return RSA_SHA256_RSA;
-    } else if (oid.equals(ECDSA_SHA256_SECP256R1.m2mOid)) {
-      return ECDSA_SHA256_SECP256R1;
-    } else if (oid.equals(ECQV_SHA256_SECP256R1.m2mOid)) {
-      return ECQV_SHA256_SECP256R1;
-    } else if (oid.equals(ECDSA_SHA384_SECP384R1.m2mOid)) {
-      return ECDSA_SHA384_SECP384R1;
-    } else if (oid.equals(ECQV_SHA384_SECP384R1.m2mOid)) {
-      return ECQV_SHA384_SECP384R1;
-    } else if (oid.equals(ECDSA_SHA512_SECP521R1.m2mOid)) {
-      return ECDSA_SHA512_SECP521R1;
-    } else if (oid.equals(ECQV_SHA512_SECP521R1.m2mOid)) {
-      return ECQV_SHA512_SECP521R1;
+    SignatureAlgorithms algorithm = byM2mOid.get(oid);
+
+    if (algorithm == null) {
+      throw new IllegalArgumentException("unknown M2M algorithm oid: " + oid);
     }
 
-    throw new IllegalArgumentException("unknown M2M algorithm oid: " + oid);
+    return algorithm;
   }
 
   /**
@@ -239,39 +259,13 @@ public enum SignatureAlgorithms {
    */
   public static SignatureAlgorithms getInstance(NfcSignatureAlgorithmOids oid)
       throws IllegalArgumentException {
-    if (oid.equals(ECDSA_SHA256_SECP192R1.nfcOid)) {
-      return ECDSA_SHA256_SECP192R1;
-    } else if (oid.equals(ECDSA_SHA256_SECP224R1.nfcOid)) {
-      return ECDSA_SHA256_SECP224R1;
-    } else if (oid.equals(ECDSA_SHA256_SECT233K1.nfcOid)) {
-      return ECDSA_SHA256_SECT233K1;
-    } else if (oid.equals(ECDSA_SHA256_SECT233R1.nfcOid)) {
-      return ECDSA_SHA256_SECT233R1;
-    } else if (oid.equals(ECQV_SHA256_SECP192R1.nfcOid)) {
-      return ECQV_SHA256_SECP192R1;
-    } else if (oid.equals(ECQV_SHA256_SECP224R1.nfcOid)) {
-      return ECQV_SHA256_SECP224R1;
-    } else if (oid.equals(ECQV_SHA256_SECT233K1.nfcOid)) {
-      return ECQV_SHA256_SECT233K1;
-    } else if (oid.equals(ECQV_SHA256_SECT233R1.nfcOid)) {
-      return ECQV_SHA256_SECT233R1;
-    } else if (oid.equals(RSA_SHA256_RSA.nfcOid)) {
-      return RSA_SHA256_RSA;
-    } else if (oid.equals(ECDSA_SHA256_SECP256R1.nfcOid)) {
-      return ECDSA_SHA256_SECP256R1;
-    } else if (oid.equals(ECQV_SHA256_SECP256R1.nfcOid)) {
-      return ECQV_SHA256_SECP256R1;
-    } else if (oid.equals(ECDSA_SHA384_SECP384R1.nfcOid)) {
-      return ECDSA_SHA384_SECP384R1;
-    } else if (oid.equals(ECQV_SHA384_SECP384R1.nfcOid)) {
-      return ECQV_SHA384_SECP384R1;
-    } else if (oid.equals(ECDSA_SHA512_SECP521R1.nfcOid)) {
-      return ECDSA_SHA512_SECP521R1;
-    } else if (oid.equals(ECQV_SHA512_SECP521R1.nfcOid)) {
-      return ECQV_SHA512_SECP521R1;
+    SignatureAlgorithms algorithm = byNfcOid.get(oid);
+
+    if (algorithm == null) {
+      throw new IllegalArgumentException("unknown NFC algorithm oid: " + oid);
     }
 
-    throw new IllegalArgumentException("unknown NFC algorithm oid: " + oid);
+    return algorithm;
   }
 
   /**
@@ -293,18 +287,6 @@ public enum SignatureAlgorithms {
     throw new IllegalArgumentException("unknown algorithm oid: " + oid);
   }
 
-  private boolean match(byte[] oidBytes) {
-    String oid = null;
-
-    try {
-      oid = ASN1ObjectIdentifier.getInstance(oidBytes).getId();
-    } catch (IllegalArgumentException ex) {
-      return false;
-    }
-
-    return match(oid);
-  }
-
   /**
    * Returns the enumeration value that corresponds to the given oid.
    *
@@ -314,48 +296,14 @@ public enum SignatureAlgorithms {
    * @throws IllegalArgumentException if oid is invalid.
    */
   public static SignatureAlgorithms getInstance(byte[] oid) throws IllegalArgumentException {
-    if (ECDSA_SHA256_SECP192R1.match(oid)) {
-      return ECDSA_SHA256_SECP192R1;
-    } else if (ECDSA_SHA256_SECP224R1.match(oid)) {
-      return ECDSA_SHA256_SECP224R1;
-    } else if (ECDSA_SHA256_SECT233K1.match(oid)) {
-      return ECDSA_SHA256_SECT233K1;
-    } else if (ECDSA_SHA256_SECT233R1.match(oid)) {
-      return ECDSA_SHA256_SECT233R1;
-    } else if (ECQV_SHA256_SECP192R1.match(oid)) {
-      return ECQV_SHA256_SECP192R1;
-    } else if (ECQV_SHA256_SECP224R1.match(oid)) {
-      return ECQV_SHA256_SECP224R1;
-    } else if (ECQV_SHA256_SECT233K1.match(oid)) {
-      return ECQV_SHA256_SECT233K1;
-    } else if (ECQV_SHA256_SECT233R1.match(oid)) {
-      return ECQV_SHA256_SECT233R1;
-    } else if (RSA_SHA256_RSA.match(oid)) {
-      return RSA_SHA256_RSA;
-    } else if (ECDSA_SHA256_SECP256R1.match(oid)) {
-      return ECDSA_SHA256_SECP256R1;
-    } else if (ECQV_SHA256_SECP256R1.match(oid)) {
-      return ECQV_SHA256_SECP256R1;
-    } else if (ECDSA_SHA384_SECP384R1.match(oid)) {
-      return ECDSA_SHA384_SECP384R1;
-    } else if (ECQV_SHA384_SECP384R1.match(oid)) {
-      return ECQV_SHA384_SECP384R1;
-    } else if (ECDSA_SHA512_SECP521R1.match(oid)) {
-      return ECDSA_SHA512_SECP521R1;
-    } else if (ECQV_SHA512_SECP521R1.match(oid)) {
-      return ECQV_SHA512_SECP521R1;
-    }
-
-    throw new IllegalArgumentException(
-        "unknown M2M/NFC algorithm oid: " + ASN1ObjectIdentifier.getInstance(oid).getId());
-  }
+    String id = ASN1ObjectIdentifier.getInstance(oid).getId();
+    SignatureAlgorithms algorithm = byOid.get(id);
 
-  private boolean match(String oid) {
-    if (oid.equals(getM2mOid().getOid()) || oid.equals(getNfcOid().getOid())) {
-      return true;
-    } else {
-      return false;
+    if (algorithm == null) {
+      throw new IllegalArgumentException("unknown M2M/NFC algorithm oid: " + id);
     }
+
+    return algorithm;
   }
 
   /**
@@ -367,39 +315,13 @@ public enum SignatureAlgorithms {
    * @throws IllegalArgumentException if oid is invalid.
    */
   public static SignatureAlgorithms getInstance(String oid) throws IllegalArgumentException {
-    if (ECDSA_SHA256_SECP192R1.match(oid)) {
-      return ECDSA_SHA256_SECP192R1;
-    } else if (ECDSA_SHA256_SECP224R1.match(oid)) {
-      return ECDSA_SHA256_SECP224R1;
-    } else if (ECDSA_SHA256_SECT233K1.match(oid)) {
-      return ECDSA_SHA256_SECT233K1;
-    } else if (ECDSA_SHA256_SECT233R1.match(oid)) {
-      return ECDSA_SHA256_SECT233R1;
-    } else if (ECQV_SHA256_SECP192R1.match(oid)) {
-      return ECQV_SHA256_SECP192R1;
-    } else if (ECQV_SHA256_SECP224R1.match(oid)) {
-      return ECQV_SHA256_SECP224R1;
-    } else if (ECQV_SHA256_SECT233K1.match(oid)) {
-      return ECQV_SHA256_SECT233K1;
-    } else if (ECQV_SHA256_SECT233R1.match(oid)) {
-      return ECQV_SHA256_SECT233R1;
-    } else if (RSA_SHA256_RSA.match(oid)) {
-      return RSA_SHA256_RSA;
-    } else if (ECDSA_SHA256_SECP256R1.match(oid)) {
-      return ECDSA_SHA256_SECP256R1;
-    } else if (ECQV_SHA256_SECP256R1.match(oid)) {
-      return ECQV_SHA256_SECP256R1;
-    } else if (ECDSA_SHA384_SECP384R1.match(oid)) {
-      return ECDSA_SHA384_SECP384R1;
-    } else if (ECQV_SHA384_SECP384R1.match(oid)) {
-      return ECQV_SHA384_SECP384R1;
-    } else if (ECDSA_SHA512_SECP521R1.match(oid)) {
-      return ECDSA_SHA512_SECP521R1;
-    } else if (ECQV_SHA512_SECP521R1.match(oid)) {
-      return ECQV_SHA512_SECP521R1;
+    SignatureAlgorithms algorithm = byOid.get(oid);
+
+    if (algorithm == null) {
+      throw new IllegalArgumentException("unknown M2M/NFC algorithm oid: " + oid);
     }
 
-    throw new IllegalArgumentException("unknown M2M/NFC algorithm oid: " + oid);
+    return algorithm;
   }
 
   /**
@@ -415,41 +337,14 @@ public enum SignatureAlgorithms {
    */
   public static SignatureAlgorithms getInstance(String oid, boolean implicit)
       throws IllegalArgumentException {
-    if(implicit) {
-      if (ECQV_SHA256_SECP192R1.match(oid)) {
-        return ECQV_SHA256_SECP192R1;
-      } else if (ECQV_SHA256_SECP224R1.secOid.getId().equals(oid)) {
-        return ECQV_SHA256_SECP224R1;
-      } else if (ECQV_SHA256_SECT233K1.secOid.getId().equals(oid)) {
-        return ECQV_SHA256_SECT233K1;
-      } else if (ECQV_SHA256_SECT233R1.secOid.getId().equals(oid)) {
-        return ECQV_SHA256_SECT233R1;
-      } else if (ECQV_SHA256_SECP256R1.secOid.getId().equals(oid)) {
-        return ECQV_SHA256_SECP256R1;
-      } else if (ECQV_SHA384_SECP384R1.secOid.getId().equals(oid)) {
-        return ECQV_SHA384_SECP384R1;
-      } else if (ECQV_SHA512_SECP521R1.secOid.getId().equals(oid)) {
-        return ECQV_SHA512_SECP521R1;
-      }
-    } else {
-      if (ECDSA_SHA256_SECP192R1.match(oid)) {
-        return ECDSA_SHA256_SECP192R1;
-      } else if (ECDSA_SHA256_SECP224R1.secOid.getId().equals(oid)) {
-        return ECDSA_SHA256_SECP224R1;
-      } else if (ECDSA_SHA256_SECT233K1.secOid.getId().equals(oid)) {
-        return ECDSA_SHA256_SECT233K1;
-      } else if (ECDSA_SHA256_SECT233R1.secOid.getId().equals(oid)) {
-        return ECDSA_SHA256_SECT233R1;
-      } else if (ECDSA_SHA256_SECP256R1.secOid.getId().equals(oid)) {
-        return ECDSA_SHA256_SECP256R1;
-      } else if (ECDSA_SHA384_SECP384R1.secOid.getId().equals(oid)) {
-        return ECDSA_SHA384_SECP384R1;
-      } else if (ECDSA_SHA512_SECP521R1.secOid.getId().equals(oid)) {
-        return ECDSA_SHA512_SECP521R1;
-      }
+    SignatureAlgorithms algorithm =
+        implicit ? implicitBySecOid.get(oid) : explicitBySecOid.get(oid);
+
+    if (algorithm == null) {
+      throw new IllegalArgumentException("No match found for SEC OID: " + oid);
     }
 
-    throw new IllegalArgumentException("No match found for SEC OID: " + oid);
+    return algorithm;
   }
 
   /**
@@ -472,4 +367,4 @@ public enum SignatureAlgorithms {
         return false;
     }
   }
-}
\ No newline at end of file
+}